@@ -15,6 +15,9 @@ import me.gimme.gimmetag.gamerule.DisableHunger;
 import me.gimme.gimmetag.gamerule.EnableProjectileKnockback;
 import me.gimme.gimmetag.item.CustomItem;
 import me.gimme.gimmetag.item.ItemManager;
+import me.gimme.gimmetag.item.entities.ProjectileBudget;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
+import me.gimme.gimmetag.item.entities.collision.ArenaCollisionCache;
 import me.gimme.gimmetag.item.items.*;
 import me.gimme.gimmetag.item.items.bows.ExecutionBow;
 import me.gimme.gimmetag.item.items.bows.GlowBow;
@@ -40,7 +43,7 @@ public final class GimmeTag extends JavaPlugin {
     public static final String PERMISSIONS_PATH = "gimmetag";
     public static final String DEV_PERMISSIONS_PATH = PERMISSIONS_PATH + ".dev";
 
-    private static final String PROTOCOL_LIB_NAME = "ProtocolLib";
+    public static final String PROTOCOL_LIB_NAME = "ProtocolLib";
 
     private static final String CLASSES_CONFIG_PATH = "classes.yml";
     private static final String ITEMS_CONFIG_PATH = "items.yml";
@@ -50,6 +53,8 @@ public final class GimmeTag extends JavaPlugin {
 
     private CommandManager commandManager;
     private ItemManager itemManager;
+    private ArenaCollisionCache arenaCollisionCache;
+    private ProjectileEngine projectileEngine;
     private TagManager tagManager;
     private ClassSelectionManager classSelectionManager;
 
@@ -73,8 +78,20 @@ public final class GimmeTag extends JavaPlugin {
 
         commandManager = new CommandManager(this);
         itemManager = new ItemManager(this);
+        arenaCollisionCache = new ArenaCollisionCache(this);
+        projectileEngine = new ProjectileEngine(this, arenaCollisionCache, new ProjectileBudget(
+                Config.PROJECTILE_BUDGET_PER_PLAYER.getValue(),
+                Config.PROJECTILE_BUDGET_PER_ARENA.getValue(),
+                Config.PROJECTILE_BUDGET_GLOBAL.getValue()));
+        projectileEngine.setTrailDistances(
+                Config.PROJECTILE_TRAILS_VIEW_DISTANCE.getValue(),
+                Config.PROJECTILE_TRAILS_FULL_RATE_DISTANCE.getValue());
+        projectileEngine.setLagCompensation(
+                Config.LAG_COMPENSATION_ENABLED.getValue(),
+                Config.LAG_COMPENSATION_MAX_REWIND.getValue());
         classSelectionManager = new ClassSelectionManager(this, itemManager);
         tagManager = new TagManager(this, itemManager, classSelectionManager);
+        projectileEngine.setTagManager(tagManager);
 
         registerCommands();
         registerEvents();
@@ -87,6 +104,8 @@ public final class GimmeTag extends JavaPlugin {
     public void onDisable() {
         tagManager.onDisable();
         itemManager.onDisable();
+        projectileEngine.onDisable();
+        arenaCollisionCache.clear();
     }
 
     public void reload() {
@@ -121,6 +140,8 @@ public final class GimmeTag extends JavaPlugin {
 
     private void registerEvents() {
         registerEvents(tagManager);
+        registerEvents(projectileEngine);
+        registerEvents(arenaCollisionCache);
         if (Config.DISABLE_HUNGER.getValue()) registerEvents(new DisableHunger(() -> tagManager.isActiveRound()));
         if (Config.DISABLE_ARROW_DAMAGE.getValue())
             registerEvents(new DisableArrowDamage(() -> tagManager.isActiveRound()));
@@ -142,7 +163,7 @@ public final class GimmeTag extends JavaPlugin {
                 id,
                 new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE),
                 Config.SWAPPER_ALLOW_HUNTER_SWAP.getValue(c),
-                this,
+                projectileEngine,
                 tagManager
         ));
         registerCustomItem(Config.INVIS_POTION, (id, c) -> new InvisPotion(id, Config.INVIS_POTION_DURATION.getValue(c).doubleValue()));
@@ -157,14 +178,15 @@ public final class GimmeTag extends JavaPlugin {
                 new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE),
                 Config.SMOKE_GRENADE_COLOR.getValue(c),
                 Config.SMOKE_GRENADE_USE_TEAM_COLOR.getValue(c),
+                projectileEngine,
                 this
         ));
-        registerCustomItem(Config.IMPULSE_GRENADE, (id, c) -> new ImpulseGrenade(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
-        registerCustomItem(Config.COOKED_EGG, (id, c) -> new CookedEgg(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
-        registerCustomItem(Config.PYKES_HOOK, (id, c) -> new PykesHook(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
-        registerCustomItem(Config.SLOW_BOW, (id, c) -> new SlowBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
-        registerCustomItem(Config.GLOW_BOW, (id, c) -> new GlowBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
-        registerCustomItem(Config.EXECUTION_BOW, (id, c) -> new ExecutionBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), this));
+        registerCustomItem(Config.IMPULSE_GRENADE, (id, c) -> new ImpulseGrenade(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
+        registerCustomItem(Config.COOKED_EGG, (id, c) -> new CookedEgg(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
+        registerCustomItem(Config.PYKES_HOOK, (id, c) -> new PykesHook(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
+        registerCustomItem(Config.SLOW_BOW, (id, c) -> new SlowBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
+        registerCustomItem(Config.GLOW_BOW, (id, c) -> new GlowBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
+        registerCustomItem(Config.EXECUTION_BOW, (id, c) -> new ExecutionBow(id, new BouncyProjectileConfig(c, Config.DEFAULT_BOUNCY_PROJECTILE), projectileEngine));
     }
 
     private void registerCommand(me.gimme.gimmecore.command.BaseCommand command) {
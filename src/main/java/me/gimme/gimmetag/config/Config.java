@@ -72,6 +72,19 @@ public abstract class Config {
 
     public static final AbstractConfig<Boolean> SOULBOUND_ITEMS = new ValueConfig<>(ITEMS_CONFIG, "soulbound-items");
 
+    private static final AbstractConfig<ConfigurationSection> PROJECTILE_BUDGET = new ValueConfig<>(ITEMS_CONFIG, "projectile-budget");
+    public static final AbstractConfig<Integer> PROJECTILE_BUDGET_PER_PLAYER = new ValueConfig<>(PROJECTILE_BUDGET, "per-player");
+    public static final AbstractConfig<Integer> PROJECTILE_BUDGET_PER_ARENA = new ValueConfig<>(PROJECTILE_BUDGET, "per-arena");
+    public static final AbstractConfig<Integer> PROJECTILE_BUDGET_GLOBAL = new ValueConfig<>(PROJECTILE_BUDGET, "global");
+
+    private static final AbstractConfig<ConfigurationSection> PROJECTILE_TRAILS = new ValueConfig<>(ITEMS_CONFIG, "projectile-trails");
+    public static final AbstractConfig<Integer> PROJECTILE_TRAILS_VIEW_DISTANCE = new ValueConfig<>(PROJECTILE_TRAILS, "view-distance");
+    public static final AbstractConfig<Integer> PROJECTILE_TRAILS_FULL_RATE_DISTANCE = new ValueConfig<>(PROJECTILE_TRAILS, "full-rate-distance");
+
+    private static final AbstractConfig<ConfigurationSection> LAG_COMPENSATION = new ValueConfig<>(ITEMS_CONFIG, "lag-compensation");
+    public static final AbstractConfig<Boolean> LAG_COMPENSATION_ENABLED = new ValueConfig<>(LAG_COMPENSATION, "enabled");
+    public static final AbstractConfig<Integer> LAG_COMPENSATION_MAX_REWIND = new ValueConfig<>(LAG_COMPENSATION, "max-rewind");
+
     private static final AbstractConfig<ConfigurationSection> CUSTOM_ITEM = new ValueConfig<>(ITEMS_CONFIG, "custom-item");
     public static final BouncyProjectileConfig DEFAULT_BOUNCY_PROJECTILE = new BouncyProjectileConfig(ITEMS_CONFIG, "default-bouncy-projectile", null);
 
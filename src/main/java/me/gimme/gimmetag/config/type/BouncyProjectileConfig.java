@@ -15,6 +15,8 @@ public class BouncyProjectileConfig extends AbilityItemConfig {
     private static final String RESTITUTION_FACTOR_PATH = "restitution-factor";
     private static final String FRICTION_FACTOR_PATH = "friction-factor";
     private static final String STICKY_PATH = "sticky";
+    private static final String REDIRECT_BOUNCES_PATH = "redirect-bounces";
+    private static final String VIRTUAL_PATH = "virtual";
     private static final String CONSUME_ON_DIRECT_HIT_PATH = "consume-on-direct-hit";
     private static final String GLOWING_PATH = "glowing";
     private static final String TRAIL_PATH = "trail";
@@ -23,6 +25,8 @@ public class BouncyProjectileConfig extends AbilityItemConfig {
     private static final String POWER_PATH = "power";
     private static final String DIRECT_HIT_DAMAGE_PATH = "direct-hit-damage";
     private static final String FRIENDLY_FIRE_PATH = "friendly-fire";
+    private static final String AIM_PREVIEW_PATH = "aim-preview";
+    private static final String LINE_OF_SIGHT_PATH = "line-of-sight";
 
     @Nullable
     private final BouncyProjectileConfig defaultConfig;
@@ -66,6 +70,14 @@ public class BouncyProjectileConfig extends AbilityItemConfig {
         return getValue().getBoolean(STICKY_PATH, defaultConfig != null && defaultConfig.isSticky());
     }
 
+    public boolean getRedirectBounces() {
+        return getValue().getBoolean(REDIRECT_BOUNCES_PATH, defaultConfig != null && defaultConfig.getRedirectBounces());
+    }
+
+    public boolean isVirtual() {
+        return getValue().getBoolean(VIRTUAL_PATH, defaultConfig != null && defaultConfig.isVirtual());
+    }
+
     public boolean getConsumeOnDirectHit() {
         return getValue().getBoolean(CONSUME_ON_DIRECT_HIT_PATH, defaultConfig != null && defaultConfig.getConsumeOnDirectHit());
     }
@@ -98,12 +110,21 @@ public class BouncyProjectileConfig extends AbilityItemConfig {
         return getValue().getBoolean(FRIENDLY_FIRE_PATH, defaultConfig != null && defaultConfig.getFriendlyFire());
     }
 
+    public boolean getAimPreview() {
+        return getValue().getBoolean(AIM_PREVIEW_PATH, defaultConfig != null && defaultConfig.getAimPreview());
+    }
+
+    public boolean getLineOfSight() {
+        return getValue().getBoolean(LINE_OF_SIGHT_PATH, defaultConfig != null && defaultConfig.getLineOfSight());
+    }
+
     public static void init(@NotNull BouncyProjectile bouncyProjectile, @NotNull BouncyProjectileConfig config) {
         bouncyProjectile.setGroundExplosionTimerTicks(Ticks.secondsToTicks(config.getGroundExplosionTimer()));
         bouncyProjectile.setGravity(config.getGravity());
         bouncyProjectile.setRestitutionFactor(config.getRestitutionFactor());
         bouncyProjectile.setFrictionFactor(config.getFrictionFactor());
         bouncyProjectile.setSticky(config.isSticky());
+        bouncyProjectile.setRedirectBounces(config.getRedirectBounces());
         bouncyProjectile.setConsumeOnDirectHit(config.getConsumeOnDirectHit());
         bouncyProjectile.setTrail(config.getTrail());
         bouncyProjectile.setBounceMarks(config.getBounceMarks());
@@ -111,5 +132,6 @@ public class BouncyProjectileConfig extends AbilityItemConfig {
         bouncyProjectile.setRadius(config.getRadius());
         bouncyProjectile.setDamageOnDirectHit(config.getDirectHitDamage());
         bouncyProjectile.setFriendlyFire(config.getFriendlyFire());
+        bouncyProjectile.setExplosionLineOfSight(config.getLineOfSight());
     }
 }
@@ -6,66 +6,114 @@ import me.gimme.gimmetag.tag.Role;
 import me.gimme.gimmetag.tag.TagManager;
 import me.gimme.gimmetag.utils.outline.OutlineEffect;
 import org.bukkit.Server;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
+import java.util.*;
 
 /**
  * Show outlines of teammates (can be seen through walls).
  */
 public class TeamOutline implements Listener {
+    private final Plugin plugin;
     private final Server server;
     private final TagManager tagManager;
+    private final boolean hunterTeammateOutline = Config.HUNTER_TEAMMATE_OUTLINE.getValue();
+    private final boolean runnerTeammateOutline = Config.RUNNER_TEAMMATE_OUTLINE.getValue();
+
+    private final Map<UUID, Role> flushedRoleByPlayer = new HashMap<>(); // Roles as of the last refresh of the outlines
+    private final Set<UUID> dirtyPlayers = new HashSet<>(); // Players with role changes since the last refresh
+    @Nullable
+    private BukkitTask flushTask;
 
     public TeamOutline(@NotNull Plugin plugin, @NotNull TagManager tagManager) {
+        this.plugin = plugin;
         this.server = plugin.getServer();
         this.tagManager = tagManager;
         new OutlineEffect(plugin, this::showOutline).show();
     }
 
     /**
-     * Refreshes players after team changes.
+     * Marks players for an outline refresh after team changes, which is done once in the next tick for all the
+     * changes of the tick.
      */
     @EventHandler(priority = EventPriority.MONITOR)
     private void onPlayerRoleSet(PlayerRoleSetEvent event) {
-        OutlineEffect.refreshOnlinePlayers();
+        dirtyPlayers.add(event.getPlayer().getUniqueId());
+        if (flushTask != null) return;
+
+        flushTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                flushTask = null;
+                flush();
+            }
+        }.runTask(plugin);
     }
 
     /**
-     * Returns if an outline should be shown of the entity with the specified entityId to the specified player.
-     *
-     * @param player   the player to see the outline
-     * @param entityId the entityId of the entity to show the outline of
-     * @return if an outline should be shown of the entity to the specified player
+     * Refreshes the outlines of the pairs of online players, with at least one marked player, whose outline has
+     * flipped since the last refresh.
      */
-    private boolean showOutline(@NotNull Player player, int entityId) {
-        Role role = tagManager.getRole(player);
+    private void flush() {
+        List<Player> players = new ArrayList<>(server.getOnlinePlayers());
+        Map<UUID, Role> roleByPlayer = new HashMap<>();
+        for (Player player : players) {
+            roleByPlayer.put(player.getUniqueId(), tagManager.getRole(player));
+        }
+
+        for (Player viewer : players) {
+            UUID viewerId = viewer.getUniqueId();
+            boolean viewerDirty = dirtyPlayers.contains(viewerId);
+
+            for (Player target : players) {
+                UUID targetId = target.getUniqueId();
+                if (viewer == target || (!viewerDirty && !dirtyPlayers.contains(targetId))) continue;
 
-        if (role == null) return false;
-        if (role == Role.HUNTER && !Config.HUNTER_TEAMMATE_OUTLINE.getValue()) return false;
-        if (role == Role.RUNNER && !Config.RUNNER_TEAMMATE_OUTLINE.getValue()) return false;
+                boolean wasShown = isTeamOutlineShown(flushedRoleByPlayer.get(viewerId), flushedRoleByPlayer.get(targetId));
+                boolean isShown = isTeamOutlineShown(roleByPlayer.get(viewerId), roleByPlayer.get(targetId));
+                if (wasShown != isShown) OutlineEffect.refresh(target, viewer);
+            }
+        }
 
-        return hasRole(entityId, role);
+        for (UUID uuid : dirtyPlayers) {
+            Role role = roleByPlayer.get(uuid);
+            if (role != null) flushedRoleByPlayer.put(uuid, role);
+            else flushedRoleByPlayer.remove(uuid);
+        }
+        dirtyPlayers.clear();
     }
 
     /**
-     * Returns if the entity with the specified entityId has the specified role.
+     * Returns if a player with the specified role should see the team outline of a player with the specified role.
      *
-     * @param entityId the entityId of the entity to check the role of
-     * @param role     the role to check against
-     * @return if the entity has the specified role
+     * @param viewerRole the role of the player to see the outline, or null if none
+     * @param targetRole the role of the player to show the outline of, or null if none
+     * @return if the team outline should be shown
      */
-    private boolean hasRole(int entityId, @NotNull Role role) {
-        return tagManager.getPlayersByRole(role).stream()
-                .map(server::getPlayer)
-                .filter(Objects::nonNull)
-                .map(Entity::getEntityId)
-                .anyMatch(id -> id == entityId);
+    private boolean isTeamOutlineShown(@Nullable Role viewerRole, @Nullable Role targetRole) {
+        if (viewerRole == null || viewerRole != targetRole) return false;
+        if (viewerRole == Role.HUNTER) return hunterTeammateOutline;
+        return runnerTeammateOutline;
+    }
+
+    /**
+     * Returns if an outline should be shown of the entity with the specified entityId to the specified player.
+     * <p>
+     * This is called asynchronously, and only reads the roles by entity id, which can be read from any thread.
+     *
+     * @param player   the player to see the outline
+     * @param entityId the entityId of the entity to show the outline of
+     * @return if an outline should be shown of the entity to the specified player
+     */
+    private boolean showOutline(@NotNull Player player, int entityId) {
+        return isTeamOutlineShown(tagManager.getRole(player.getEntityId()), tagManager.getRole(entityId));
     }
 }
@@ -1,7 +1,10 @@
 package me.gimme.gimmetag.item;
 
+import me.gimme.gimmetag.GimmeTag;
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
+import me.gimme.gimmetag.item.entities.TrajectoryPreview;
 import me.gimme.gimmetag.sfx.PlayableSound;
 import me.gimme.gimmetag.sfx.SoundEffect;
 import me.gimme.gimmetag.sfx.SoundEffects;
@@ -14,7 +17,6 @@ import org.bukkit.SoundCategory;
 import org.bukkit.entity.*;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -25,12 +27,13 @@ public abstract class BouncyProjectileItem extends AbilityItem {
 
     private static final SoundEffect HIT_PLAYER_SOUND_EFFECT = new StandardSoundEffect(Sound.ENTITY_ARROW_HIT_PLAYER, SoundCategory.NEUTRAL, 0.5f);
 
-    private final Plugin plugin;
+    private final ProjectileEngine projectileEngine;
     private final BouncyProjectileConfig config;
     private final double speed;
     private final int maxExplosionTimerTicks;
     private final double radius;
     private final double power;
+    private final boolean virtual;
 
     @Nullable
     private Class<? extends Projectile> projectileClass;
@@ -41,19 +44,40 @@ public abstract class BouncyProjectileItem extends AbilityItem {
     @Nullable
     private PlayableSound explosionSound;
     private boolean hitSound = true;
+    private double interactionRadius;
+    @Nullable
+    private TrajectoryPreview aimPreview;
 
     public BouncyProjectileItem(@NotNull String id, @NotNull String displayName, @NotNull Material type, @NotNull BouncyProjectileConfig config,
-                                @NotNull Plugin plugin) {
+                                @NotNull ProjectileEngine projectileEngine) {
         super(id, displayName, type, config);
 
-        this.plugin = plugin;
+        this.projectileEngine = projectileEngine;
         this.config = config;
         this.speed = config.getSpeed();
         this.maxExplosionTimerTicks = Ticks.secondsToTicks(config.getMaxExplosionTimer());
         this.radius = config.getRadius();
         this.power = config.getPower();
+        // Virtual projectiles only exist in packets, which are sent through ProtocolLib
+        this.virtual = config.isVirtual() && projectileEngine.hasProtocolLib();
+        if (config.isVirtual() && !virtual) projectileEngine.getPlugin().getLogger().warning(
+                GimmeTag.PROTOCOL_LIB_NAME + " is needed for virtual projectiles, so " + id + " is thrown as a real entity.");
 
         setUseSound(SoundEffects.THROW);
+
+        if (config.getAimPreview()) {
+            aimPreview = new TrajectoryPreview(projectileEngine, speed, config.getGravity(),
+                    config.getRestitutionFactor(), config.getFrictionFactor(), config.isSticky());
+            // Only thrown projectiles have a known speed before the use
+            aimPreview.start(player -> projectileClass == null
+                    && isThisCustomItem(player.getInventory().getItemInMainHand()));
+        }
+    }
+
+    @Override
+    public void onDisable() {
+        super.onDisable();
+        if (aimPreview != null) aimPreview.stop();
     }
 
     /**
@@ -62,7 +86,7 @@ public abstract class BouncyProjectileItem extends AbilityItem {
      * @param projectile     the projectile that exploded
      * @param livingEntities the living entities that were in range of the explosion
      */
-    protected abstract void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities);
+    protected abstract void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities);
 
     /**
      * Does something when an entity gets hit directly by the projectile.
@@ -70,16 +94,36 @@ public abstract class BouncyProjectileItem extends AbilityItem {
      * @param projectile the projectile that hit the entity directly
      * @param entity     the entity that was hit
      */
-    protected abstract void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity);
+    protected abstract void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity);
+
+    /**
+     * Does something every tick for each other live projectile within the interaction radius of the projectile, while
+     * the projectile is moving. Only called if the interaction radius is set.
+     *
+     * @param projectile the projectile of this item
+     * @param other      the other projectile within the interaction radius
+     */
+    protected void onNearbyProjectile(@NotNull BouncyProjectile projectile, @NotNull BouncyProjectile other) {
+    }
 
     @Override
     protected boolean onUse(@NotNull ItemStack itemStack, @NotNull Player user) {
-        launch(user, 1);
-
-        return true;
+        return launch(user, 1);
     }
 
-    void launch(@NotNull Player launcher, double force) {
+    /**
+     * Launches a bouncy projectile from the specified launcher, unless the projectile budget is used up.
+     * <p>
+     * The closer the budget is to being used up, the more the projectile is degraded.
+     *
+     * @param launcher the player to launch the projectile from
+     * @param force    the multiplier of the speed of the projectile
+     * @return if a projectile was launched
+     */
+    boolean launch(@NotNull Player launcher, double force) {
+        double load = projectileEngine.getBudgetLoad(launcher);
+        if (load >= 1) return false;
+
         BouncyProjectile bouncyProjectile;
 
         double realSpeed = force * speed;
@@ -88,12 +132,18 @@ public abstract class BouncyProjectileItem extends AbilityItem {
             Projectile projectile = launcher.launchProjectile(projectileClass);
             projectile.setVelocity(projectile.getVelocity().multiply(realSpeed));
 
-            bouncyProjectile = new BouncyProjectile(plugin, projectile, launcher, maxExplosionTimerTicks);
+            bouncyProjectile = new BouncyProjectile(projectileEngine, projectile, launcher, maxExplosionTimerTicks);
+        } else if (virtual) {
+            bouncyProjectile = BouncyProjectile.launchVirtual(projectileEngine, launcher, realSpeed, maxExplosionTimerTicks, displayItem);
         } else {
-            bouncyProjectile = BouncyProjectile.launch(plugin, launcher, realSpeed, maxExplosionTimerTicks, displayItem);
+            bouncyProjectile = BouncyProjectile.launch(projectileEngine, launcher, realSpeed, maxExplosionTimerTicks, displayItem,
+                    config.getGravity());
         }
 
         init(bouncyProjectile);
+        projectileEngine.degrade(bouncyProjectile, load);
+
+        return true;
     }
 
     private void init(@NotNull BouncyProjectile bouncyProjectile) {
@@ -102,11 +152,12 @@ public abstract class BouncyProjectileItem extends AbilityItem {
         bouncyProjectile.setOnExplode(this::onExplode);
         bouncyProjectile.setOnHitEntity((p, e) -> {
             onHitEntity(p, e);
-            if (hitSound && e.getType() == EntityType.PLAYER && (p.getShooter() instanceof Player))
+            if (hitSound && e.getType() == EntityType.PLAYER && p.getShooter() instanceof Player)
                 HIT_PLAYER_SOUND_EFFECT.play((Player) p.getShooter());
         });
         bouncyProjectile.setExplosionSound(explosionSound);
         if (trailParticle != null) bouncyProjectile.setTrailParticle(trailParticle);
+        if (interactionRadius > 0) bouncyProjectile.setOnNearbyProjectile(this::onNearbyProjectile, interactionRadius);
     }
 
     protected void setDisplayItem(@NotNull Material material, boolean enchanted) {
@@ -137,6 +188,15 @@ public abstract class BouncyProjectileItem extends AbilityItem {
         hitSound = false;
     }
 
+    protected void setInteractionRadius(double interactionRadius) {
+        this.interactionRadius = interactionRadius;
+    }
+
+    @NotNull
+    protected ProjectileEngine getProjectileEngine() {
+        return projectileEngine;
+    }
+
     protected double getRadius() {
         return radius;
     }
@@ -1,6 +1,7 @@
 package me.gimme.gimmetag.item;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import me.gimme.gimmetag.sfx.StandardSoundEffect;
 import org.bukkit.Material;
 import org.bukkit.Sound;
@@ -11,7 +12,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 public abstract class BowProjectileItem extends BouncyProjectileItem {
@@ -19,8 +19,9 @@ public abstract class BowProjectileItem extends BouncyProjectileItem {
     private static final Material MATERIAL = Material.BOW;
     private static final Class<? extends Projectile> PROJECTILE_CLASS = Arrow.class;
 
-    public BowProjectileItem(@NotNull String id, @NotNull String displayName, @NotNull BouncyProjectileConfig config, @NotNull Plugin plugin) {
-        super(id, displayName, MATERIAL, config, plugin);
+    public BowProjectileItem(@NotNull String id, @NotNull String displayName, @NotNull BouncyProjectileConfig config,
+                             @NotNull ProjectileEngine projectileEngine) {
+        super(id, displayName, MATERIAL, config, projectileEngine);
 
         setUseEvent(UseEvent.SHOOT_BOW);
         setUseSound(new StandardSoundEffect(Sound.ENTITY_ARROW_SHOOT, SoundCategory.NEUTRAL));
@@ -34,7 +35,7 @@ public abstract class BowProjectileItem extends BouncyProjectileItem {
     }
 
     void use(@NotNull ItemStack itemStack, @NotNull Player user, double force) {
-        launch(user, force);
+        if (!launch(user, force)) return;
 
         super.use(itemStack, user);
     }
@@ -0,0 +1,222 @@
+package me.gimme.gimmetag.item.entities;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.SoundCategory;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sounds and bounce marks of the bounces during a tick, queued to be sent to the clients once at the end of the
+ * tick.
+ * <p>
+ * Bounces in the same cell of the world are merged into one sound, with the volumes summed and the pitches averaged
+ * by volume, and one bounce mark. Each player is sent at most a limited amount of bounce marks per tick, the closest
+ * ones first, so that several projectiles rattling around in the same place cost about as much as one.
+ */
+class BounceFeedback {
+
+    private static final int CELL_SIZE = 2;                 // Size of the cells that bounces are merged in
+    private static final float MAX_VOLUME = 4;              // Max volume of a merged bounce sound
+    private static final int MARK_PARTICLES = 20;           // Particles of a bounce mark
+    private static final double MARK_OFFSET = 0.02;         // Spread of the particles of a bounce mark
+    private static final double MARK_VIEW_DISTANCE = 32;    // Max distance for players to see bounce marks, as vanilla
+    private static final int MAX_MARKS_PER_VIEWER = 8;      // Max bounce marks sent to a player per tick
+
+    private final Map<World, Map<Long, Bounce>> bouncesByCell = new HashMap<>();
+    private final List<Bounce> bouncePool = new ArrayList<>();
+    private final List<Bounce> marks = new ArrayList<>();
+    private final Location playerLocation = new Location(null, 0, 0, 0);
+    private final Location soundLocation = new Location(null, 0, 0, 0);
+    private int bounceCount;
+
+    /**
+     * Queues a bounce at the specified position.
+     *
+     * @param world  the world of the bounce
+     * @param x      the x-coordinate of the bounce
+     * @param y      the y-coordinate of the bounce
+     * @param z      the z-coordinate of the bounce
+     * @param volume the volume of the bounce sound
+     * @param pitch  the pitch of the bounce sound
+     * @param mark   if a bounce mark should be left
+     */
+    void add(@NotNull World world, double x, double y, double z, float volume, float pitch, boolean mark) {
+        Map<Long, Bounce> bounces = bouncesByCell.computeIfAbsent(world, w -> new HashMap<>());
+        long cellKey = ProjectileEngine.blockKey(toCell(x), toCell(y), toCell(z));
+
+        Bounce bounce = bounces.get(cellKey);
+        if (bounce == null) {
+            bounce = obtainBounce();
+            bounce.world = world;
+            bounces.put(cellKey, bounce);
+        }
+        bounce.add(x, y, z, volume, pitch, mark);
+    }
+
+    /**
+     * Sends the queued bounces to the clients and clears the queue.
+     *
+     * @param engine the engine to get the players of the worlds from
+     */
+    void flush(@NotNull ProjectileEngine engine) {
+        if (bounceCount == 0) return;
+
+        for (Map.Entry<World, Map<Long, Bounce>> entry : bouncesByCell.entrySet()) {
+            Map<Long, Bounce> bounces = entry.getValue();
+            if (bounces.isEmpty()) continue;
+            World world = entry.getKey();
+
+            for (Bounce bounce : bounces.values()) {
+                if (bounce.volume > 0) {
+                    world.playSound(bounce.getLocation(soundLocation), Sound.BLOCK_ANVIL_FALL, SoundCategory.NEUTRAL,
+                            (float) Math.min(MAX_VOLUME, bounce.volume), (float) (bounce.pitchSum / bounce.volume));
+                }
+                if (bounce.mark) marks.add(bounce);
+            }
+
+            if (!marks.isEmpty()) sendMarks(engine.getLivingEntities(world).getPlayers());
+
+            marks.clear();
+            bounces.clear();
+        }
+
+        for (int i = 0; i < bounceCount; i++) {
+            bouncePool.get(i).reset();
+        }
+        bounceCount = 0;
+    }
+
+    /**
+     * Drops the queued bounces of the specified world without sending them.
+     *
+     * @param world the world to drop the queued bounces of
+     */
+    void clear(@NotNull World world) {
+        bouncesByCell.remove(world);
+    }
+
+    /**
+     * Clears the queue without sending it.
+     */
+    void clear() {
+        bouncesByCell.clear();
+        bouncePool.clear();
+        marks.clear();
+        bounceCount = 0;
+    }
+
+    /**
+     * Sends the queued bounce marks of a world to each of the specified players in range of them, the closest ones
+     * first, up to the max amount per player.
+     * <p>
+     * Only the closest marks are needed, so they are picked by a partial selection sort in place, instead of sorting
+     * all the marks.
+     *
+     * @param players the players of the world of the bounce marks
+     */
+    private void sendMarks(@NotNull List<Player> players) {
+        for (int p = 0; p < players.size(); p++) {
+            Player player = players.get(p);
+            player.getLocation(playerLocation);
+            double playerX = playerLocation.getX();
+            double playerY = playerLocation.getY();
+            double playerZ = playerLocation.getZ();
+
+            for (int i = 0; i < marks.size(); i++) {
+                Bounce mark = marks.get(i);
+                mark.distanceSquared = mark.distanceSquared(playerX, playerY, playerZ);
+            }
+
+            int count = Math.min(MAX_MARKS_PER_VIEWER, marks.size());
+            for (int sent = 0; sent < count; sent++) {
+                int closest = sent;
+                for (int i = sent + 1; i < marks.size(); i++) {
+                    if (marks.get(i).distanceSquared < marks.get(closest).distanceSquared) closest = i;
+                }
+                Bounce mark = marks.get(closest);
+                if (mark.distanceSquared > MARK_VIEW_DISTANCE * MARK_VIEW_DISTANCE) break;
+
+                marks.set(closest, marks.get(sent));
+                marks.set(sent, mark);
+                player.spawnParticle(Particle.DRAGON_BREATH, mark.markX, mark.markY, mark.markZ,
+                        MARK_PARTICLES, MARK_OFFSET, MARK_OFFSET, MARK_OFFSET, 0);
+            }
+        }
+    }
+
+    @NotNull
+    private Bounce obtainBounce() {
+        if (bounceCount == bouncePool.size()) bouncePool.add(new Bounce());
+        return bouncePool.get(bounceCount++);
+    }
+
+    private static int toCell(double coordinate) {
+        return Math.floorDiv((int) Math.floor(coordinate), CELL_SIZE);
+    }
+
+
+    /**
+     * The bounces merged in one cell during a tick.
+     */
+    private static class Bounce {
+        private World world;
+        private double volume;
+        private double pitchSum; // Sum of the pitches weighted by volume
+        private double soundX, soundY, soundZ; // Sums of the coordinates weighted by volume
+        private boolean mark;
+        private double markX, markY, markZ; // Coordinates of the first bounce that left a mark
+        private double distanceSquared; // Distance to the player that the marks are currently sent to
+
+        private void add(double x, double y, double z, float volume, float pitch, boolean mark) {
+            this.volume += volume;
+            this.pitchSum += pitch * volume;
+            this.soundX += x * volume;
+            this.soundY += y * volume;
+            this.soundZ += z * volume;
+
+            if (mark && !this.mark) {
+                this.mark = true;
+                this.markX = x;
+                this.markY = y;
+                this.markZ = z;
+            }
+        }
+
+        /**
+         * Sets the given location to the location of the merged sound.
+         *
+         * @return the given location
+         */
+        @NotNull
+        private Location getLocation(@NotNull Location location) {
+            location.setWorld(world);
+            location.setX(soundX / volume);
+            location.setY(soundY / volume);
+            location.setZ(soundZ / volume);
+            return location;
+        }
+
+        private double distanceSquared(double x, double y, double z) {
+            double dx = markX - x;
+            double dy = markY - y;
+            double dz = markZ - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        private void reset() {
+            world = null;
+            volume = 0;
+            pitchSum = 0;
+            soundX = soundY = soundZ = 0;
+            mark = false;
+        }
+    }
+}
@@ -1,23 +1,18 @@
 package me.gimme.gimmetag.item.entities;
 
+import me.gimme.gimmetag.item.entities.collision.BlockCollisionView;
+import me.gimme.gimmetag.item.entities.collision.SweptSphere;
 import me.gimme.gimmetag.sfx.PlayableSound;
 import me.gimme.gimmetag.utils.outline.OutlineEffect;
 import org.bukkit.*;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.*;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.HandlerList;
-import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.projectiles.ProjectileSource;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scoreboard.Scoreboard;
-import org.bukkit.scoreboard.Team;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -29,38 +24,54 @@ import java.util.function.BiConsumer;
  * Represents a projectile that bounces when it hits a surface.
  * <p>
  * It only disappears when it "explodes", which happens, at the latest, after a set maximum amount of time.
+ * <p>
+ * All live bouncy projectiles are owned by a {@link ProjectileEngine}, which routes the events concerning them.
+ * <p>
+ * A bouncy projectile can also be virtual, in which case it has no entity on the server. Its physics are then run by
+ * this class and it is only shown to nearby players with packets.
  */
-public class BouncyProjectile implements Listener {
+public class BouncyProjectile {
 
     private static final Class<? extends ThrowableProjectile> PROJECTILE_CLASS = Snowball.class;
     private static final int TRAIL_FREQUENCY_TICKS = 1;                 // Ticks between each trail update
-    private static final double Y_VELOCITY_CONSIDERED_GROUNDED = 0.15;  // The y-velocity when the bouncing should stop
-    private static final double RADIUS = 0.07;                          // Radius of the projectile
-    private static final double DEFAULT_GRAVITY = 0.028;                // ~0.028 is the standard gravity for a snowball
+    static final double Y_VELOCITY_CONSIDERED_GROUNDED = 0.15;          // The y-velocity when the bouncing should stop
+    static final double RADIUS = 0.07;                                  // Radius of the projectile
+    private static final double DEFAULT_GRAVITY = ThrowableType.SNOWBALL.getGravity();
+    private static final double GRAVITY_TOLERANCE = 0.01;               // Max gravity difference to not apply manually
+    static final double DRAG_FACTOR = 0.99;                             // Velocity kept per tick in air, as for a snowball
+    private static final double DIRECT_HIT_KNOCKBACK = 0.4;             // Knockback of virtual direct hits, as in vanilla
+    static final double CONTACT_SEPARATION = 1.0E-4;                    // Distance kept from a surface after contact
+    static final int MAX_COLLISIONS_PER_TICK = 4;                       // Max sub-tick collisions of virtual projectiles
+    private static final double STILL_SPEED = 0.01;                     // The speed when the projectile is considered still
+    private static final double MIRROR_TOLERANCE = 0.05;                // Max unexpected movement to still derive velocity
 
     private final UUID uuid;
+    private final ProjectileEngine engine;
     private final LivingEntity source;
     private final boolean sourceIsPlayer;
     private final Class<? extends Projectile> projectileClass;
     private final boolean isArrow;
-    private final BukkitRunnable updateTask;
-    private final BukkitRunnable explosionTimerTask;
-    private final BukkitRunnable trailTask;
     private final OutlineEffect outlineEffect;
 
     @Nullable
-    private BiConsumer<@NotNull Projectile, @NotNull Collection<@NotNull Entity>> onExplode;
+    private BiConsumer<@NotNull BouncyProjectile, @NotNull Collection<@NotNull Entity>> onExplode;
+    @Nullable
+    private BiConsumer<@NotNull BouncyProjectile, @NotNull LivingEntity> onHitEntity;
     @Nullable
-    private BiConsumer<@NotNull Projectile, @NotNull LivingEntity> onHitEntity;
+    private BiConsumer<@NotNull BouncyProjectile, @NotNull BouncyProjectile> onNearbyProjectile;
+    private double interactionRadius;
     private int groundExplosionTimerTicks = -1;
-    private boolean manualGravity;
+    private boolean builtInGravity = true; // If the built-in gravity of the projectile entity is used in the air
+    private double manualGravity; // Gravity applied manually every tick in the air, on top of any built-in gravity
     private double gravity = DEFAULT_GRAVITY;
     private double restitutionFactor = 0.45;
     private double frictionFactor = 0.8;
     private boolean sticky;
+    private boolean redirectBounces;
     private boolean showTrail;
     private boolean showBounceMarks;
     private double radius;
+    private boolean explosionLineOfSight;
     private double damageOnDirectHit;
     private boolean consumeOnDirectHit;
     private boolean friendlyFire;
@@ -71,121 +82,228 @@ public class BouncyProjectile implements Listener {
     private Particle trailParticle = Particle.END_ROD;
 
     private boolean grounded;
-    private int groundedTicks; // Amount of ticks the projectile has been rolling on the ground
+    private long groundedSinceTick = -1; // Engine tick when the projectile started rolling on the ground
+    private long rollEndTick = -1; // Engine tick when the current roll comes to rest, or -1 if not rolling
 
-    private final Set<UUID> spawnedProjectiles = new HashSet<>();
-    private Projectile currentProjectile;
+    @Nullable
+    private Projectile currentProjectile; // Null if virtual
+    private int previousProjectileId = -1; // Still indexed, since it can deal damage right after the bounce
+    private boolean removed;
+    private boolean exploding; // If the explosion is queued to be resolved at the end of the engine tick
+
+    @Nullable
+    private VirtualEntity virtualEntity; // Only set if virtual
+    private int ignoredEntityId = -1; // The last entity hit by the virtual projectile, to not hit it again from inside
+    private boolean callingHitDamageEvent; // If the damage event of a hit without the vanilla collision is being called
+
+    // Kinematic state, kept in primitives for the update to not allocate. Authoritative if virtual, and otherwise
+    // mirrored from the current projectile at the start of every update.
+    private World world;
+    private double x;
+    private double y;
+    private double z;
+    private double velocityX;
+    private double velocityY;
+    private double velocityZ;
+    private boolean velocityChanged; // If the velocity has changed since mirrored, to be written to the projectile
+
+    // State that the projectile entity was left in at the end of the last update, to derive its velocity from how far
+    // it moved since, instead of reading it
+    private boolean entityStateLeft;
+    private double leftX;
+    private double leftY;
+    private double leftZ;
+    private double leftVelocityX;
+    private double leftVelocityY;
+    private double leftVelocityZ;
+    private double leftGravity; // Gravity that vanilla applies to the projectile entity after moving it
+
+    // Velocity of a redirected projectile that was slowed down to stop at the point of contact with a block, to bounce
+    // with in the next update
+    private boolean contactPending;
+    private double contactVelocityX;
+    private double contactVelocityY;
+    private double contactVelocityZ;
+
+    // Reused between updates
+    private final Location entityLocation = new Location(null, 0, 0, 0);
+    private final Vector entityVelocity = new Vector();
+    private final SweptSphere.Hit sweepHit = new SweptSphere.Hit();
+    private final SweptSphere.Hit entityHit = new SweptSphere.Hit();
+
+    // Managed by the engine
+    int engineSlot = -1; // Index in the engine's array of awake projectiles, or -1 if not awake
+    long fuseDeadline; // Engine tick when the max amount of ticks to live is reached
+    int fuseSlot = -1; // Index in the engine's queue of fuse deadlines, or -1 if not in it
+    long lastUpdateTick = -1; // Engine tick of the last update, to never update twice in the same tick
+    boolean sleeping; // If taken out of the updates until woken
+    long wakeTick; // Engine tick to be woken at if sleeping
+    long sleepKey; // Key of the block that the projectile sleeps in
+    World launchWorld; // World of the shooter at launch, that the projectile counts against the arena budget of
 
     /**
      * Launches a bouncy projectile from the given source player with the specified initial speed. After the specified
      * amount of max ticks, the projectile disappears from the world.
+     * <p>
+     * The projectile is thrown as the vanilla projectile type with the built-in gravity closest to the specified
+     * gravity, but with the same initial velocity as a snowball, no matter the type.
      *
-     * @param plugin      The plugin to schedule tasks from
+     * @param engine      The engine to own the projectile
      * @param source      The player to launch the projectile
      * @param speed       The initial speed of the launched projectile
      * @param maxTicks    Max amount of ticks for the projectile to live
      * @param displayItem The display ItemStack for the thrown projectile, or null for the default
+     * @param gravity     The strength of the gravity that will be set on the projectile
      * @return the launched bouncy projectile
      */
-    public static BouncyProjectile launch(@NotNull Plugin plugin, @NotNull Player source, double speed, int maxTicks,
-                                          @Nullable ItemStack displayItem) {
-        ThrowableProjectile projectile = source.launchProjectile(PROJECTILE_CLASS);
+    public static BouncyProjectile launch(@NotNull ProjectileEngine engine, @NotNull Player source, double speed, int maxTicks,
+                                          @Nullable ItemStack displayItem, double gravity) {
+        ThrowableProjectile projectile = source.launchProjectile(ThrowableType.closestTo(gravity).getProjectileClass(),
+                getThrowVelocity(source, source.getEyeLocation()).multiply(speed));
         if (displayItem != null) projectile.setItem(displayItem);
         projectile.setShooter(source);
-        projectile.setVelocity(projectile.getVelocity().multiply(speed));
 
-        BouncyProjectile bouncyProjectile = new BouncyProjectile(plugin, projectile, source, maxTicks);
+        BouncyProjectile bouncyProjectile = new BouncyProjectile(engine, projectile, source, maxTicks);
         bouncyProjectile.setDisplayItem(displayItem);
         return bouncyProjectile;
     }
 
+    /**
+     * Launches a virtual bouncy projectile from the given source player with the specified initial speed, the same way
+     * as {@link #launch(ProjectileEngine, Player, double, int, ItemStack, double)} would launch a normal one.
+     * <p>
+     * The virtual projectile has no entity on the server. It is only shown to the players within range, as a
+     * client-side entity moved with packets, while its physics are run by this class.
+     *
+     * @param engine      The engine to own the projectile
+     * @param source      The player to launch the projectile
+     * @param speed       The initial speed of the launched projectile
+     * @param maxTicks    Max amount of ticks for the projectile to live
+     * @param displayItem The display ItemStack for the thrown projectile, or null for the default
+     * @return the launched virtual bouncy projectile
+     */
+    public static BouncyProjectile launchVirtual(@NotNull ProjectileEngine engine, @NotNull Player source, double speed,
+                                                 int maxTicks, @Nullable ItemStack displayItem) {
+        // Same spawn location and velocity as a thrown snowball
+        Location location = source.getEyeLocation().subtract(0, 0.1, 0);
+        Vector velocity = getThrowVelocity(source, location).multiply(speed);
+
+        BouncyProjectile bouncyProjectile = new BouncyProjectile(engine, source, location, velocity, maxTicks, displayItem);
+        bouncyProjectile.setDisplayItem(displayItem);
+        return bouncyProjectile;
+    }
+
+    /**
+     * Returns the initial velocity of a snowball thrown by the specified player in the direction of the specified
+     * location.
+     *
+     * @param source    the player throwing the snowball
+     * @param direction the location to take the direction of the throw from
+     * @return the initial velocity of the thrown snowball
+     */
+    @NotNull
+    static Vector getThrowVelocity(@NotNull Player source, @NotNull Location direction) {
+        Vector velocity = direction.getDirection().multiply(1.5);
+        Vector sourceVelocity = source.getVelocity();
+        return velocity.add(new Vector(sourceVelocity.getX(), source.isOnGround() ? 0 : sourceVelocity.getY(), sourceVelocity.getZ()));
+    }
+
     /**
      * Creates a new bouncy projectile out of the given normal projectile. The given normal projectile can have been
      * spawned from anywhere but the specified source living entity will be set as the shooter.
      *
-     * @param plugin     the plugin to register the events with
+     * @param engine     the engine to own the projectile
      * @param projectile the projectile to turn into a bouncy projectile
      * @param source     the living entity that will be set as the shooter of the projectile
      * @param maxTicks   the max amount of ticks this projectile can live before being removed
      */
-    public BouncyProjectile(@NotNull Plugin plugin, @NotNull Projectile projectile, @NotNull LivingEntity source, int maxTicks) {
-
-        plugin.getServer().getPluginManager().registerEvents(this, plugin);
-
-        this.uuid = UUID.randomUUID();
-        this.source = source;
-        this.sourceIsPlayer = source instanceof Player;
-        this.projectileClass = projectile.getClass();
-        this.isArrow = AbstractArrow.class.isAssignableFrom(projectileClass);
+    public BouncyProjectile(@NotNull ProjectileEngine engine, @NotNull Projectile projectile, @NotNull LivingEntity source, int maxTicks) {
+        this(engine, source, projectile.getClass(), maxTicks);
         setCurrentProjectile(projectile);
+        readEntityState(projectile);
 
         // Remove the entity when the server stops
         //noinspection deprecation
-        getCurrentProjectile().setPersistent(false);
+        projectile.setPersistent(false);
+    }
 
+    /**
+     * Creates a new virtual bouncy projectile at the given location, with no entity on the server.
+     *
+     * @param engine      the engine to own the projectile
+     * @param source      the living entity that is the shooter of the projectile
+     * @param location    the location to spawn the projectile at
+     * @param velocity    the initial velocity of the projectile
+     * @param maxTicks    the max amount of ticks this projectile can live before being removed
+     * @param displayItem the item to display as the projectile, or null for the default
+     */
+    private BouncyProjectile(@NotNull ProjectileEngine engine, @NotNull LivingEntity source, @NotNull Location location,
+                             @NotNull Vector velocity, int maxTicks, @Nullable ItemStack displayItem) {
+        this(engine, source, PROJECTILE_CLASS, maxTicks);
+
+        this.world = Objects.requireNonNull(location.getWorld());
+        this.x = location.getX();
+        this.y = location.getY();
+        this.z = location.getZ();
+        this.velocityX = velocity.getX();
+        this.velocityY = velocity.getY();
+        this.velocityZ = velocity.getZ();
+        this.virtualEntity = new VirtualEntity(location, displayItem);
+        outlineEffect.addTarget(virtualEntity.getEntityId());
+        virtualEntity.move(x, y, z, engine.getLivingEntities(world).getPlayers());
+    }
 
-        updateTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                update();
-            }
-        };
-        updateTask.runTaskTimer(plugin, 0, 1);
+    private BouncyProjectile(@NotNull ProjectileEngine engine, @NotNull LivingEntity source,
+                             @NotNull Class<? extends Projectile> projectileClass, int maxTicks) {
+        Plugin plugin = engine.getPlugin();
 
-        explosionTimerTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                explode();
-            }
-        };
-        explosionTimerTask.runTaskLater(plugin, maxTicks);
-
-        trailTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!showTrail) return;
-                if (isGrounded() && isStill()) return;
-
-                Projectile p = getCurrentProjectile();
-
-                p.getWorld().spawnParticle(trailParticle,
-                        p.getLocation() // Align the trail to fit the actual path better
-                                .add(p.getVelocity().multiply(-1).multiply(0.3))
-                                .add(0, RADIUS, 0),
-                        1, 0, 0, 0, 0, null, true);
-            }
-        };
-        trailTask.runTaskTimer(plugin, TRAIL_FREQUENCY_TICKS, TRAIL_FREQUENCY_TICKS);
+        this.uuid = UUID.randomUUID();
+        this.engine = engine;
+        this.source = source;
+        this.sourceIsPlayer = source instanceof Player;
+        this.projectileClass = projectileClass;
+        this.isArrow = AbstractArrow.class.isAssignableFrom(projectileClass);
+        engine.register(this, maxTicks);
 
-        outlineEffect = OutlineEffect.personalEffect(plugin, source, entityId -> entityId == getCurrentProjectile().getEntityId());
+        outlineEffect = OutlineEffect.personalEffect(plugin, source);
     }
 
     /**
      * Makes the projectile explode (figuratively) and disappear from the world.
+     * <p>
+     * The explosion is queued and resolved at the end of the engine tick, together with the other explosions of the
+     * tick, and the projectile stops moving until then.
      */
     public void explode() {
-        Projectile projectile = getCurrentProjectile();
-        if (explosionSound != null) explosionSound.playAt(projectile.getLocation());
-
-        if (onExplode != null) {
-            Location location = projectile.getLocation().clone();
-            double extendedRadius = radius + 3;
-            Collection<Entity> nearbyLivingEntities = radius <= 0 ? new ArrayList<>() : projectile.getWorld().getNearbyEntities(
-                    location, extendedRadius, extendedRadius, extendedRadius,
-                    e -> {
-                        if (!checkFriendlyFire(e)) return false;
-
-                        double halfHeight = e.getHeight() / 2;
+        if (removed || exploding) return;
+        exploding = true;
+        engine.queueExplosion(this);
+    }
 
-                        location.subtract(0, halfHeight, 0);
-                        boolean inRange = e.getType().isAlive() && e.getLocation().distanceSquared(location) <= radius * radius;
-                        location.add(0, halfHeight, 0);
+    /**
+     * Resolves the queued explosion of the projectile, finding the living entities in range in the specified snapshot,
+     * and removes the projectile.
+     * <p>
+     * A living entity is in range if the center of its bounding box is within the radius of the explosion, and, if
+     * enabled, if the explosion has a line of sight to it.
+     *
+     * @param livingEntities the living entities of the world of the projectile as of this tick
+     */
+    void resolveExplosion(@NotNull LivingEntitySnapshot livingEntities) {
+        if (removed) return;
 
-                        return inRange;
-                    }
-            );
+        Location location = getLocation();
+        if (explosionSound != null) explosionSound.playAt(location);
 
-            onExplode.accept(projectile, nearbyLivingEntities);
+        if (onExplode != null) {
+            List<Entity> livingEntitiesInRange = new ArrayList<>();
+            World world = location.getWorld();
+            double x = location.getX(), y = location.getY(), z = location.getZ();
+            if (radius > 0) livingEntities.collectInSphere(x, y, z, radius,
+                    e -> checkFriendlyFire(e) && (!explosionLineOfSight || engine.hasLineOfSight(world, x, y, z, e)),
+                    livingEntitiesInRange);
+
+            onExplode.accept(this, livingEntitiesInRange);
         }
         remove();
     }
@@ -194,14 +312,20 @@ public class BouncyProjectile implements Listener {
      * Removes this projectile from the world without exploding.
      */
     public void remove() {
-        getCurrentProjectile().remove();
+        if (removed) return;
+        removed = true;
 
-        updateTask.cancel();
-        explosionTimerTask.cancel();
-        trailTask.cancel();
         outlineEffect.hide();
 
-        HandlerList.unregisterAll(this);
+        if (virtualEntity != null) {
+            if (sourceIsPlayer) OutlineEffect.removeColor((Player) source, virtualEntity.getEntityId());
+            virtualEntity.remove();
+        } else if (currentProjectile != null) {
+            currentProjectile.remove();
+            engine.unindex(previousProjectileId);
+            engine.unindex(currentProjectile.getEntityId());
+        }
+        engine.unregister(this);
     }
 
     /**
@@ -209,7 +333,7 @@ public class BouncyProjectile implements Listener {
      *
      * @param onExplode the consumer to set
      */
-    public void setOnExplode(@Nullable BiConsumer<@NotNull Projectile, @NotNull Collection<@NotNull Entity>> onExplode) {
+    public void setOnExplode(@Nullable BiConsumer<@NotNull BouncyProjectile, @NotNull Collection<@NotNull Entity>> onExplode) {
         this.onExplode = onExplode;
     }
 
@@ -218,10 +342,42 @@ public class BouncyProjectile implements Listener {
      *
      * @param onHitEntity the consumer to set
      */
-    public void setOnHitEntity(@Nullable BiConsumer<@NotNull Projectile, @NotNull LivingEntity> onHitEntity) {
+    public void setOnHitEntity(@Nullable BiConsumer<@NotNull BouncyProjectile, @NotNull LivingEntity> onHitEntity) {
         this.onHitEntity = onHitEntity;
     }
 
+    /**
+     * Sets a consumer to define what happens every tick for each other live projectile within the specified
+     * interaction radius of the projectile, while the projectile is moving.
+     *
+     * @param onNearbyProjectile the consumer to set, accepting this projectile and the nearby projectile
+     * @param interactionRadius  the max distance to the other projectiles to interact with
+     */
+    public void setOnNearbyProjectile(@Nullable BiConsumer<@NotNull BouncyProjectile, @NotNull BouncyProjectile> onNearbyProjectile,
+                                      double interactionRadius) {
+        this.onNearbyProjectile = onNearbyProjectile;
+        this.interactionRadius = interactionRadius;
+    }
+
+    /**
+     * Adds the specified velocity to the projectile, throwing it off the ground if it was grounded. Projectiles that
+     * are stuck in a block are not moved.
+     *
+     * @param x the velocity to add along the x-axis
+     * @param y the velocity to add along the y-axis
+     * @param z the velocity to add along the z-axis
+     */
+    public void push(double x, double y, double z) {
+        if (removed || exploding || (isSticky() && isGrounded())) return;
+
+        engine.wake(this);
+        grounded = false;
+        stopRoll();
+        setVelocity(velocityX + x, velocityY + y, velocityZ + z);
+        // The velocity of a normal projectile would be overwritten by reading the entity state in its next update
+        if (currentProjectile != null) writeEntityVelocity(currentProjectile);
+    }
+
     /**
      * Sets the amount of ticks spent on the ground before exploding prematurely.
      *
@@ -233,19 +389,36 @@ public class BouncyProjectile implements Listener {
 
     /**
      * Sets the strength of gravity to affect this projectile.
+     * <p>
+     * As much of the gravity as possible is left to the built-in gravity of the projectile entity, for better
+     * client-side prediction. With manual gravity, the velocity is updated every tick and the projectile is noticeably
+     * laggy. For the types of {@link ThrowableType}, the built-in gravity is either kept or turned off, whichever is
+     * closer, and only the remainder is applied manually. Other projectiles (like arrows) use their built-in gravity
+     * if the gravity is close to the default gravity, and otherwise only manual gravity.
      *
      * @param gravity The strength of the gravity
      */
     public void setGravity(double gravity) {
-        // If the gravity is close to the default gravity, it is better to use Minecraft's built in gravity system
-        // for better client-side prediction. With manual gravity the projectile is noticeably laggy.
-        if (Math.abs(gravity - DEFAULT_GRAVITY) < 0.01) {
-            this.gravity = DEFAULT_GRAVITY;
-            this.manualGravity = false;
+        this.gravity = gravity;
+
+        // Virtual projectiles always have their gravity applied manually
+        if (isVirtual()) {
+            this.builtInGravity = false;
+            this.manualGravity = gravity;
+            return;
+        }
+
+        ThrowableType throwableType = ThrowableType.of(projectileClass);
+        double builtIn;
+        if (throwableType != null) {
+            builtIn = Math.abs(gravity) < Math.abs(gravity - throwableType.getGravity()) ? 0 : throwableType.getGravity();
         } else {
-            this.gravity = gravity;
-            this.manualGravity = true;
+            builtIn = Math.abs(gravity - DEFAULT_GRAVITY) < GRAVITY_TOLERANCE ? DEFAULT_GRAVITY : 0;
         }
+
+        this.builtInGravity = builtIn != 0;
+        this.manualGravity = Math.abs(gravity - builtIn) < GRAVITY_TOLERANCE ? 0 : gravity - builtIn;
+        if (manualGravity == 0) this.gravity = builtIn;
     }
 
     /**
@@ -284,6 +457,23 @@ public class BouncyProjectile implements Listener {
         this.showBounceMarks = showBounceMarks;
     }
 
+    /**
+     * Sets if the explosion should only reach the living entities that it has a line of sight to, from its center to
+     * the eyes or the center of the entity, instead of reaching through blocks.
+     *
+     * @param explosionLineOfSight if the explosion should need a line of sight
+     */
+    public void setExplosionLineOfSight(boolean explosionLineOfSight) {
+        this.explosionLineOfSight = explosionLineOfSight;
+    }
+
+    /**
+     * @return if the explosion needs a line of sight to reach the living entities
+     */
+    boolean hasExplosionLineOfSight() {
+        return explosionLineOfSight;
+    }
+
     /**
      * Sets the radius of the explosion effect.
      * <p>
@@ -341,15 +531,27 @@ public class BouncyProjectile implements Listener {
     public void setGlowing(boolean glowing) {
         if (glowing) {
             if (outlineEffect.show()) {
-                ProjectileSource shooter = getCurrentProjectile().getShooter();
-                if (shooter instanceof Player) OutlineEffect.setColor(null, (Player) shooter, getCurrentProjectile());
-                OutlineEffect.refresh(getCurrentProjectile());
+                if (sourceIsPlayer) {
+                    if (virtualEntity != null) OutlineEffect.setColor(null, (Player) source, virtualEntity.getEntityId(), virtualEntity.getUniqueId());
+                    else OutlineEffect.setColor(null, (Player) source, Objects.requireNonNull(currentProjectile));
+                }
+                refreshOutline();
             }
         } else {
-            if (outlineEffect.hide()) OutlineEffect.refresh(getCurrentProjectile());
+            if (outlineEffect.hide()) refreshOutline();
         }
     }
 
+    /**
+     * Resends the metadata of the projectile, for the outline effect to be applied or removed.
+     */
+    private void refreshOutline() {
+        if (!sourceIsPlayer) return;
+
+        if (virtualEntity != null) virtualEntity.refreshMetadata((Player) source);
+        else OutlineEffect.refresh(Objects.requireNonNull(currentProjectile), (Player) source);
+    }
+
     /**
      * Sets the particle to use for the trail of the projectile.
      *
@@ -379,20 +581,17 @@ public class BouncyProjectile implements Listener {
      * @param projectile the projectile to set as current
      */
     private void setCurrentProjectile(@NotNull Projectile projectile) {
-        this.currentProjectile = projectile;
-        spawnedProjectiles.add(projectile.getUniqueId());
-    }
+        // Only the last replaced projectile can still cause events, right after being replaced in a bounce
+        if (currentProjectile != null) {
+            engine.unindex(previousProjectileId);
+            previousProjectileId = currentProjectile.getEntityId();
+            outlineEffect.removeTarget(previousProjectileId);
+        }
 
-    /**
-     * Returns if the specified entity was spawned from this bouncy projectile.
-     * <p>
-     * This means either the original launched projectile or any that spawned after a bounce.
-     *
-     * @param entity the entity to check if spawned from this
-     * @return if the specified entity was spawned from this bouncy projectile
-     */
-    private boolean isFromThisBouncyProjectile(@NotNull Entity entity) {
-        return spawnedProjectiles.contains(entity.getUniqueId());
+        this.currentProjectile = projectile;
+        entityStateLeft = false;
+        engine.index(projectile.getEntityId(), this);
+        outlineEffect.addTarget(projectile.getEntityId());
     }
 
     /**
@@ -441,7 +640,7 @@ public class BouncyProjectile implements Listener {
      * @return if the projectile is still on the ground
      */
     public boolean isStill() {
-        return getCurrentProjectile().getVelocity().lengthSquared() < 0.0001;
+        return velocityX * velocityX + velocityY * velocityY + velocityZ * velocityZ < STILL_SPEED * STILL_SPEED;
     }
 
     /**
@@ -453,6 +652,18 @@ public class BouncyProjectile implements Listener {
         this.sticky = sticky;
     }
 
+    /**
+     * Sets if bounces should be predicted and made by redirecting the velocity of the projectile, keeping the same
+     * entity for its whole lifetime, instead of replacing the entity after every vanilla hit.
+     * <p>
+     * Hits that could not be predicted still fall back to replacing the entity.
+     *
+     * @param redirectBounces if bounces should be made by redirecting the velocity of the projectile
+     */
+    public void setRedirectBounces(boolean redirectBounces) {
+        this.redirectBounces = redirectBounces;
+    }
+
     /**
      * Returns if the projectile sticks to the first surface it hits.
      *
@@ -463,13 +674,85 @@ public class BouncyProjectile implements Listener {
     }
 
     /**
-     * @return the current Projectile object that lives in the world until the next bounce
+     * @return the current Projectile object that lives in the world until the next bounce, or null if virtual
      */
-    @NotNull
+    @Nullable
     public Projectile getCurrentProjectile() {
         return currentProjectile;
     }
 
+    /**
+     * @return if this projectile is virtual, only existing on the clients
+     */
+    public boolean isVirtual() {
+        return virtualEntity != null;
+    }
+
+    /**
+     * @return the entity id of the current projectile, on the server or, if virtual, on the clients
+     */
+    public int getEntityId() {
+        if (virtualEntity != null) return virtualEntity.getEntityId();
+        return Objects.requireNonNull(currentProjectile).getEntityId();
+    }
+
+    /**
+     * @return a copy of the current location of this projectile
+     */
+    @NotNull
+    public Location getLocation() {
+        if (virtualEntity != null) return new Location(world, x, y, z);
+        return Objects.requireNonNull(currentProjectile).getLocation();
+    }
+
+    /**
+     * @return a copy of the current velocity of this projectile
+     */
+    @NotNull
+    public Vector getVelocity() {
+        if (virtualEntity != null) return new Vector(velocityX, velocityY, velocityZ);
+        return Objects.requireNonNull(currentProjectile).getVelocity();
+    }
+
+    /**
+     * @return the world that this projectile is in
+     */
+    @NotNull
+    public World getWorld() {
+        if (virtualEntity != null) return world;
+        return Objects.requireNonNull(currentProjectile).getWorld();
+    }
+
+    /**
+     * @return the living entity that launched this projectile
+     */
+    @NotNull
+    public LivingEntity getShooter() {
+        return source;
+    }
+
+    /**
+     * Sets the velocity of this projectile, to be written to the current projectile at the end of the update if not
+     * virtual.
+     *
+     * @param velocityX the x-component of the velocity to set
+     * @param velocityY the y-component of the velocity to set
+     * @param velocityZ the z-component of the velocity to set
+     */
+    private void setVelocity(double velocityX, double velocityY, double velocityZ) {
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        this.velocityZ = velocityZ;
+        velocityChanged = true;
+    }
+
+    /**
+     * @return if this projectile has exploded or been removed from the world
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
     /**
      * @return a hash code value for this {@link BouncyProjectile}
      */
@@ -480,94 +763,348 @@ public class BouncyProjectile implements Listener {
 
 
     /**
-     * Main update method, run every tick.
+     * Main update method, run by the engine every tick.
+     * <p>
+     * The update avoids allocating objects per projectile, apart from the packets of virtual projectiles, hits and
+     * bounces, and reading the velocity of an entity that did not move as predicted. The state of a normal projectile
+     * is read from its entity once, into the primitive fields, and its velocity is only written back if it changed.
+     *
+     * @param tick the current engine tick
      */
-    private void update() {
-        // If the underlying projectile has been removed for some external reason, remove completely.
-        if (getCurrentProjectile().isDead()) remove();
+    void update(long tick) {
+        if (exploding) return;
+
+        if (virtualEntity != null) {
+            moveGrounded(tick);
+            if (removed || exploding) return;
+            moveVirtual();
+            if (removed) return;
+        } else {
+            Projectile p = Objects.requireNonNull(currentProjectile);
+            // If the underlying projectile has been removed for some external reason, remove completely.
+            if (p.isDead()) {
+                remove();
+                return;
+            }
+
+            readEntityState(p);
+            if (hitPlayerLagCompensated()) return;
+            applyGravity(p);
+            moveGrounded(tick);
+            if (removed || exploding) return;
+            if (redirectBounces) redirectBounce(p);
+            writeEntityVelocity(p);
+            leaveEntityState(p);
+        }
 
-        applyGravity();
-        moveGrounded();
+        if (tick % TRAIL_FREQUENCY_TICKS == 0) spawnTrail(tick);
+    }
+
+    /**
+     * Mirrors the location and velocity of the specified projectile entity into the primitive fields.
+     * <p>
+     * The location is read into a reused location, but the API has no way to read the velocity without allocating a
+     * new vector. Vanilla moves the entity by its velocity and then applies drag and gravity to it, so if the entity
+     * moved by the velocity it was left with at the last update, its velocity is derived from the movement instead.
+     * Otherwise something else moved it or changed its velocity (like a collision, water or a teleport), and the
+     * velocity is read.
+     *
+     * @param p the projectile entity to read the state of
+     */
+    private void readEntityState(@NotNull Projectile p) {
+        p.getLocation(entityLocation);
+        world = entityLocation.getWorld();
+        x = entityLocation.getX();
+        y = entityLocation.getY();
+        z = entityLocation.getZ();
+        velocityChanged = false;
+
+        if (entityStateLeft) {
+            entityStateLeft = false;
+            double movedX = x - leftX;
+            double movedY = y - leftY;
+            double movedZ = z - leftZ;
+            double dx = movedX - leftVelocityX;
+            double dy = movedY - leftVelocityY;
+            double dz = movedZ - leftVelocityZ;
+            if (dx * dx + dy * dy + dz * dz < MIRROR_TOLERANCE * MIRROR_TOLERANCE) {
+                velocityX = movedX * DRAG_FACTOR;
+                velocityY = movedY * DRAG_FACTOR - leftGravity;
+                velocityZ = movedZ * DRAG_FACTOR;
+                return;
+            }
+        }
+
+        Vector velocity = p.getVelocity();
+        velocityX = velocity.getX();
+        velocityY = velocity.getY();
+        velocityZ = velocity.getZ();
+    }
+
+    /**
+     * Remembers the location and velocity that the specified projectile entity is left with after the update, to
+     * derive its velocity from at the next update.
+     *
+     * @param p the projectile entity that was updated
+     */
+    private void leaveEntityState(@NotNull Projectile p) {
+        entityStateLeft = true;
+        leftX = entityLocation.getX();
+        leftY = entityLocation.getY();
+        leftZ = entityLocation.getZ();
+        leftVelocityX = velocityX;
+        leftVelocityY = velocityY;
+        leftVelocityZ = velocityZ;
+        leftGravity = p.hasGravity() ? gravity - manualGravity : 0;
+    }
+
+    /**
+     * Writes the velocity to the specified projectile entity, if it has changed since it was mirrored.
+     *
+     * @param p the projectile entity to write the velocity to
+     */
+    private void writeEntityVelocity(@NotNull Projectile p) {
+        if (!velocityChanged) return;
+
+        entityVelocity.setX(velocityX).setY(velocityY).setZ(velocityZ);
+        p.setVelocity(entityVelocity);
+        velocityChanged = false;
+    }
+
+    /**
+     * Spawns the trail effect (if enabled) behind the projectile, for the players that can see it.
+     *
+     * @param tick the current engine tick
+     */
+    private void spawnTrail(long tick) {
+        if (!showTrail) return;
+        if (isGrounded() && isStill()) return;
+
+        // Align the trail to fit the actual path better
+        engine.getTrailRenderer().spawn(engine.getLivingEntities(world).getPlayers(), trailParticle,
+                x - velocityX * 0.3, y - velocityY * 0.3 + RADIUS, z - velocityZ * 0.3, tick);
     }
 
     /**
      * Manually applies gravity (if enabled) on the projectile.
+     *
+     * @param p the current projectile entity
+     */
+    private void applyGravity(@NotNull Projectile p) {
+        boolean vanillaGravity = !isGrounded() && builtInGravity;
+        if (p.hasGravity() != vanillaGravity) p.setGravity(vanillaGravity);
+        if (isGrounded() || manualGravity == 0) return;
+
+        setVelocity(velocityX, velocityY - manualGravity, velocityZ);
+    }
+
+    /**
+     * Returns if the projectile is resting on the ground, or stuck in a block, so that updating it would do nothing
+     * until the block it rests on changes or it should explode.
+     *
+     * @return if the projectile can be taken out of the updates until woken
+     */
+    boolean canSleep() {
+        return !exploding && isGrounded() && velocityX == 0 && velocityY == 0 && velocityZ == 0;
+    }
+
+    /**
+     * @return the engine tick when the projectile will explode from having been on the ground for too long, or
+     * {@link Long#MAX_VALUE} if never
      */
-    private void applyGravity() {
-        Projectile p = getCurrentProjectile();
+    long getGroundExplosionTick() {
+        if (groundExplosionTimerTicks < 0 || groundedSinceTick < 0) return Long.MAX_VALUE;
+        return groundedSinceTick + groundExplosionTimerTicks;
+    }
+
+    /**
+     * @return the x-coordinate of the block that the projectile is in
+     */
+    int getBlockX() {
+        return Location.locToBlock(x);
+    }
+
+    /**
+     * @return the y-coordinate of the block that the projectile is in
+     */
+    int getBlockY() {
+        return Location.locToBlock(y);
+    }
+
+    /**
+     * @return the z-coordinate of the block that the projectile is in
+     */
+    int getBlockZ() {
+        return Location.locToBlock(z);
+    }
+
+    /**
+     * @return the x-coordinate of the projectile as of its last update
+     */
+    double getX() {
+        return x;
+    }
+
+    /**
+     * @return the y-coordinate of the projectile as of its last update
+     */
+    double getY() {
+        return y;
+    }
+
+    /**
+     * @return the z-coordinate of the projectile as of its last update
+     */
+    double getZ() {
+        return z;
+    }
 
-        p.setGravity(!isGrounded() && !manualGravity);
-        if (isGrounded() || !manualGravity) return;
+    /**
+     * @return the consumer of the other live projectiles within the interaction radius, or null if none
+     */
+    @Nullable
+    BiConsumer<@NotNull BouncyProjectile, @NotNull BouncyProjectile> getOnNearbyProjectile() {
+        return onNearbyProjectile;
+    }
 
-        Vector velocity = getCurrentProjectile().getVelocity();
-        velocity.setY(velocity.getY() - gravity);
-        getCurrentProjectile().setVelocity(velocity);
+    /**
+     * @return the max distance to the other projectiles to interact with
+     */
+    double getInteractionRadius() {
+        return interactionRadius;
     }
 
     /**
      * Handles the logic for the projectile when rolling on the ground.
+     *
+     * @param tick the current engine tick
      */
-    private void moveGrounded() {
+    private void moveGrounded(long tick) {
         if (!isGrounded()) {
             // Reset grounded timer
-            groundedTicks = 0;
+            groundedSinceTick = -1;
             return;
         }
-
-        Projectile p = getCurrentProjectile();
+        if (groundedSinceTick < 0) groundedSinceTick = tick;
 
         // Check if still on a solid block (could have rolled off)
-        Block block = p.getLocation().getBlock();
-        Material inBlockType = block.getType();
-        Material onBlockType = block.getRelative(gravity >= 0 ? BlockFace.DOWN : BlockFace.UP).getType();
-        if (!inBlockType.isSolid() && !onBlockType.isSolid() && !isSticky()) {
+        BlockCollisionView collisionView = engine.getCollisionView(world);
+        int blockX = Location.locToBlock(x);
+        int blockY = Location.locToBlock(y);
+        int blockZ = Location.locToBlock(z);
+        boolean inSolidBlock = collisionView.getCollisionBoxes(blockX, blockY, blockZ).length > 0;
+        boolean onSolidBlock = collisionView.getCollisionBoxes(blockX, gravity >= 0 ? blockY - 1 : blockY + 1, blockZ).length > 0;
+        if (!inSolidBlock && !onSolidBlock && !isSticky()) {
             grounded = false;
+            stopRoll();
             return;
         }
 
-        // Stop completely if the velocity is very low
-        if (isStill()) p.setVelocity(new Vector(0, 0, 0));
+        if (rollEndTick < 0 && !isStill()) startRoll(tick);
 
-        // Apply surface friction
-        p.setVelocity(p.getVelocity().multiply(getFrictionFactor()));
+        // Stop completely at the end of the roll, or if the velocity is very low
+        if (tick >= rollEndTick || isStill()) {
+            stopRoll();
+            if (velocityX != 0 || velocityY != 0 || velocityZ != 0) setVelocity(0, 0, 0);
+        }
 
         // Explode if grounded for too long
-        if (groundExplosionTimerTicks >= 0 && groundedTicks++ >= groundExplosionTimerTicks) explode();
+        if (tick >= getGroundExplosionTick()) explode();
+    }
+
+    /**
+     * Starts a roll on the ground from the current velocity.
+     * <p>
+     * Surface friction slows the roll down exponentially, which would need a velocity update every tick. Instead, the
+     * distance and duration of the roll are computed up front, and the projectile is given the constant velocity that
+     * covers the same distance in the same time with only the vanilla drag, which the clients can predict on their
+     * own. The roll is then stopped when its duration is up, so that a roll only costs a velocity update at its start
+     * and at its end.
+     *
+     * @param tick the current engine tick
+     */
+    private void startRoll(long tick) {
+        // Speed kept per tick with friction, including the vanilla drag of normal projectiles
+        double decay = frictionFactor * (isVirtual() ? 1 : DRAG_FACTOR);
+        double speed = Math.sqrt(velocityX * velocityX + velocityZ * velocityZ);
+
+        if (decay <= 0 || speed < STILL_SPEED) {
+            rollEndTick = tick;
+            return;
+        }
+        if (decay >= DRAG_FACTOR) {
+            // Friction is not slowing it down more than the drag, so it rolls at the drag until it stops or explodes
+            rollEndTick = Long.MAX_VALUE;
+            setRollVelocity(velocityX, velocityZ);
+            return;
+        }
+
+        // Ticks until it would be still, and the ratio of the distance covered until then to the starting speed
+        int ticks = Math.max(1, (int) Math.ceil(Math.log(STILL_SPEED / speed) / Math.log(decay)));
+        double distance = decay * (1 - Math.pow(decay, ticks)) / (1 - decay);
+        // Ratio of the constant velocity with drag that covers the same distance in the same amount of ticks
+        double rollSpeed = distance * (1 - DRAG_FACTOR) / (1 - Math.pow(DRAG_FACTOR, ticks));
+
+        rollEndTick = tick + ticks;
+        setRollVelocity(velocityX * rollSpeed, velocityZ * rollSpeed);
+    }
+
+    /**
+     * Sets the horizontal velocity of a roll, to be predicted by the clients.
+     */
+    private void setRollVelocity(double velocityX, double velocityZ) {
+        setVelocity(velocityX, 0, velocityZ);
+        if (virtualEntity != null) virtualEntity.setVelocity(velocityX, 0, velocityZ);
+    }
+
+    /**
+     * Stops the current roll, if rolling, leaving the velocity as it is.
+     */
+    private void stopRoll() {
+        if (rollEndTick < 0) return;
+
+        rollEndTick = -1;
+        if (virtualEntity != null) virtualEntity.setVelocity(0, 0, 0);
     }
 
     /**
      * Handles the event of the projectile hitting a surface (like a block or an entity).
      * <p>
      * Controls all of the logic surrounding bounces.
+     *
+     * @param event the hit event of an entity spawned from this bouncy projectile
      */
-    @EventHandler(priority = EventPriority.MONITOR)
-    private void onProjectileHit(ProjectileHitEvent event) {
+    void onHit(@NotNull ProjectileHitEvent event) {
         Projectile oldProjectile = event.getEntity();
-        if (!oldProjectile.getUniqueId().equals(getCurrentProjectile().getUniqueId())) return;
+        if (currentProjectile == null || oldProjectile.getEntityId() != currentProjectile.getEntityId()) return;
 
-        Vector velocity = oldProjectile.getVelocity().clone();
+        // Read the exact velocity, since the entity has not moved yet in this tick
+        entityStateLeft = false;
+        readEntityState(oldProjectile);
+        contactPending = false;
         Block hitBlock = event.getHitBlock();
         BlockFace hitBlockFace = event.getHitBlockFace();
         Entity hitEntity = event.getHitEntity();
-        World world = oldProjectile.getWorld();
-
-        Location hitLocation = oldProjectile.getLocation().clone();
-        improveHitLocation(hitLocation, velocity, hitBlock, hitBlockFace);
 
-        // Bounce hit mark
-        if (showBounceMarks) world.spawnParticle(Particle.DRAGON_BREATH, hitLocation,
-                20, 0.02, 0.02, 0.02, 0);
+        if (hitBlock != null && sweepBlocks(velocityX, velocityY, velocityZ)) {
+            // Exact contact with the collision box of the block, including non-full blocks
+            moveToContact(velocityX, velocityY, velocityZ);
+            hitBlockFace = sweepHit.getBlockFace();
+        } else {
+            // The reused location was just read, and is the last known location before the hit
+            entityVelocity.setX(velocityX).setY(velocityY).setZ(velocityZ);
+            improveHitLocation(entityLocation, entityVelocity, hitBlock, hitBlockFace);
+            x = entityLocation.getX();
+            y = entityLocation.getY();
+            z = entityLocation.getZ();
+        }
 
-        // Bounce sound
-        double bounceMagnitude = hitBlockFace != null ? Math.abs(velocity.dot(hitBlockFace.getDirection())) : velocity.length();
-        float volume = (float) bounceMagnitude;
-        float pitch = (float) (1.8f / (bounceMagnitude + 1f));
-        world.playSound(hitLocation, Sound.BLOCK_ANVIL_FALL, SoundCategory.NEUTRAL, volume, pitch);
+        playBounceEffects(hitBlockFace);
 
         // On hit entity
         if (hitEntity != null) {
             if (onHitEntity != null && checkFriendlyFire(hitEntity) && hitEntity instanceof LivingEntity)
-                onHitEntity.accept(oldProjectile, (LivingEntity) hitEntity);
+                onHitEntity.accept(this, (LivingEntity) hitEntity);
             // Projectile will be removed after modifying damage in EntityDamageByEntityEvent
             if (consumeOnDirectHit) {
                 if ((hitEntity instanceof HumanEntity) && ((HumanEntity) hitEntity).getGameMode() == GameMode.CREATIVE)
@@ -581,7 +1118,7 @@ public class BouncyProjectile implements Listener {
             if (isSticky()) {
                 grounded = true;
                 // Don't allow picking it back up
-                ((AbstractArrow) getCurrentProjectile()).setPickupStatus(AbstractArrow.PickupStatus.DISALLOWED);
+                ((AbstractArrow) oldProjectile).setPickupStatus(AbstractArrow.PickupStatus.DISALLOWED);
                 return;
             }
 
@@ -589,28 +1126,17 @@ public class BouncyProjectile implements Listener {
             oldProjectile.remove();
         }
 
+        if (applyBouncePhysics(hitBlockFace)) oldProjectile.setGravity(false);
 
-        // Check if the bounce was on the ground (or the roof if gravity is inverted)
-        boolean groundBounce = hitBlockFace != null && ((gravity > 0 && hitBlockFace.getModY() > 0) || (gravity < 0 && hitBlockFace.getModY() < 0));
-
-        // Bounce logic
-        if ((groundBounce && Math.abs(velocity.getY()) <= Y_VELOCITY_CONSIDERED_GROUNDED) || isSticky()) {
-            // Set grounded
-            grounded = true;
-            velocity.setY(0);
-            oldProjectile.setGravity(false);
-
-            // If sticky, stop completely
-            if (isSticky()) velocity.multiply(0);
-        } else {
-            // Apply bounce physics
-            bounce(velocity, hitBlockFace);
-        }
-
-        // Spawn new projectile with the post-bounce velocity
-        setCurrentProjectile(world.spawn(hitLocation, projectileClass, e -> {
+        // Spawn new projectile with the post-bounce velocity, which is copied by the entity
+        entityVelocity.setX(velocityX).setY(velocityY).setZ(velocityZ);
+        velocityChanged = false;
+        entityLocation.setX(x);
+        entityLocation.setY(y);
+        entityLocation.setZ(z);
+        setCurrentProjectile(world.spawn(entityLocation, projectileClass, e -> {
             if (displayItem != null && e instanceof ThrowableProjectile) ((ThrowableProjectile) e).setItem(displayItem);
-            e.setVelocity(velocity);
+            e.setVelocity(entityVelocity);
             e.setGravity(oldProjectile.hasGravity());
             e.setShooter(source);
             e.setFireTicks(oldProjectile.getFireTicks());
@@ -623,51 +1149,342 @@ public class BouncyProjectile implements Listener {
     /**
      * Makes the projectile deal damage on direct hits if enabled and removes it if it should be consumed on direct
      * hit.
+     * <p>
+     * The projectile is consumed even if the damage has been cancelled by another listener, since the hit still uses
+     * it up, the same as for a hit without the vanilla collision.
+     *
+     * @param event the damage event where an entity spawned from this bouncy projectile is the damager
      */
-    @EventHandler(priority = EventPriority.LOW)
-    private void onDirectHitDamage(EntityDamageByEntityEvent event) {
-        if (event.isCancelled()) return;
-        if (!isFromThisBouncyProjectile(event.getDamager())) return;
+    void onDirectHitDamage(@NotNull EntityDamageByEntityEvent event) {
+        if (callingHitDamageEvent) return; // Handled by the hit that called the event
 
-        if (damageOnDirectHit == 0) event.setCancelled(true);
-        else event.setDamage(damageOnDirectHit);
+        if (!event.isCancelled()) {
+            if (damageOnDirectHit == 0) event.setCancelled(true);
+            else event.setDamage(damageOnDirectHit);
+        }
         if (consumeOnDirectHit) remove();
     }
 
     /**
-     * Applies bounce physics on the given velocity vector according to the block face that was hit.
+     * Bounces the projectile before it hits a block, if it would hit one during this tick, by redirecting its
+     * velocity.
      * <p>
-     * If no block face was hit, the bounce simply goes the opposite direction.
+     * The velocity of the entity is first set to stop it at the point of contact at the end of this tick, and is
+     * bounced from there in the next update, since the entity is moved by vanilla after the update and would
+     * otherwise turn around before reaching the block. The rest of the tick's movement is not made up for.
+     * <p>
+     * This keeps the same entity for the whole lifetime instead of the projectile being replaced after every vanilla
+     * hit, so that a bounce only costs two velocity updates. Entities in the way are left to the vanilla hit
+     * detection, as well as sticky arrows, which are left stuck in the block as they are.
      *
-     * @param velocity     The velocity to apply the bounce physics on
-     * @param hitBlockFace The block face that was hit, or null if no block face was hit
+     * @param p the current projectile entity
      */
-    private void bounce(@NotNull Vector velocity, @Nullable BlockFace hitBlockFace) {
-        if (hitBlockFace != null && hitBlockFace.getDirection().lengthSquared() != 0) {
-            if (hitBlockFace.getModX() != 0) {
-                velocity.setX(Math.abs(velocity.getX()) * hitBlockFace.getModX());
-                velocity.setX(velocity.getX() * getRestitutionFactor());
-            } else {
-                velocity.setX(velocity.getX() * getFrictionFactor());
+    private void redirectBounce(@NotNull Projectile p) {
+        if (isArrow && isSticky()) return;
+
+        boolean atContact = contactPending;
+        if (contactPending) {
+            contactPending = false;
+            setVelocity(contactVelocityX, contactVelocityY, contactVelocityZ);
+        }
+
+        if (!sweepBlocks(velocityX, velocityY, velocityZ)) return;
+        double fraction = sweepHit.getFraction();
+        if (traceEntity(velocityX * fraction, velocityY * fraction, velocityZ * fraction) != null) return;
+
+        if (!atContact && fraction > 0) {
+            contactPending = true;
+            contactVelocityX = velocityX;
+            contactVelocityY = velocityY;
+            contactVelocityZ = velocityZ;
+            setVelocity(velocityX * fraction + sweepHit.getNormalX() * CONTACT_SEPARATION,
+                    velocityY * fraction + sweepHit.getNormalY() * CONTACT_SEPARATION,
+                    velocityZ * fraction + sweepHit.getNormalZ() * CONTACT_SEPARATION);
+            return;
+        }
+
+        boolean wasGrounded = isGrounded();
+        bounceOnBlock(velocityX, velocityY, velocityZ);
+        if (isGrounded() && !wasGrounded) {
+            // Put it down on the surface, since it would otherwise be left hovering where the bounce was predicted
+            p.setGravity(false);
+            entityLocation.setX(x);
+            entityLocation.setY(y);
+            entityLocation.setZ(z);
+            p.teleport(entityLocation);
+        }
+    }
+
+    /**
+     * Moves the virtual projectile one tick, bouncing it on any block or living entity in the way, and applies drag and
+     * gravity.
+     * <p>
+     * After a bounce on a block, the projectile continues with the rest of the tick's movement in the new direction,
+     * so that the distance traveled is the same no matter where in the tick the bounce happened.
+     * <p>
+     * The projectile explodes where it is if it moves into an unloaded chunk, the same as when its fuse runs out, since
+     * there is nothing to collide with there.
+     */
+    private void moveVirtual() {
+        VirtualEntity entity = Objects.requireNonNull(virtualEntity);
+        if (!world.isChunkLoaded(Location.locToBlock(x) >> 4, Location.locToBlock(z) >> 4)) {
+            explode();
+            return;
+        }
+
+        double remaining = 1; // Fraction of the tick left to move
+        for (int i = 0; i < MAX_COLLISIONS_PER_TICK && remaining > 0; i++) {
+            double dx = velocityX * remaining;
+            double dy = velocityY * remaining;
+            double dz = velocityZ * remaining;
+            boolean hitBlock = sweepBlocks(dx, dy, dz);
+            double blockFraction = hitBlock ? sweepHit.getFraction() : 1;
+
+            LivingEntity hitEntity = traceEntity(dx * blockFraction, dy * blockFraction, dz * blockFraction);
+            if (hitEntity != null) {
+                // The sweep is against the entity's box expanded by the radius, so this is the center at impact
+                double entityFraction = blockFraction * entityHit.getFraction();
+                x += dx * entityFraction;
+                y += dy * entityFraction;
+                z += dz * entityFraction;
+                ignoredEntityId = hitEntity.getEntityId();
+
+                playBounceEffects(null);
+                hitEntityVirtually(hitEntity);
+                if (removed) return;
+                applyBouncePhysics(null);
+                break;
             }
-            if (hitBlockFace.getModY() != 0) {
-                velocity.setY(Math.abs(velocity.getY()) * hitBlockFace.getModY());
-                velocity.setY(velocity.getY() * getRestitutionFactor());
-            } else {
-                velocity.setY(velocity.getY() * getFrictionFactor());
+
+            if (!hitBlock) {
+                x += dx;
+                y += dy;
+                z += dz;
+                break;
             }
-            if (hitBlockFace.getModZ() != 0) {
-                velocity.setZ(Math.abs(velocity.getZ()) * hitBlockFace.getModZ());
-                velocity.setZ(velocity.getZ() * getRestitutionFactor());
-            } else {
-                velocity.setZ(velocity.getZ() * getFrictionFactor());
+
+            bounceOnBlock(dx, dy, dz);
+            remaining *= 1 - blockFraction;
+        }
+
+        if (!isGrounded()) setVelocity(velocityX * DRAG_FACTOR, velocityY * DRAG_FACTOR - gravity, velocityZ * DRAG_FACTOR);
+        else if (rollEndTick >= 0) setVelocity(velocityX * DRAG_FACTOR, velocityY, velocityZ * DRAG_FACTOR); // As predicted
+
+        entity.move(x, y, z, engine.getLivingEntities(world).getPlayers());
+    }
+
+    /**
+     * Handles the projectile hitting the specified living entity directly without the vanilla collision (as a virtual
+     * projectile, or a lag compensated hit), doing what the vanilla hit and damage events would do for a real
+     * projectile.
+     * <p>
+     * If there is a projectile entity, a damage event with it as the damager is called first, the same as for a
+     * vanilla hit, so that the damage listeners of projectiles (like the game rules) get to modify the damage. If the
+     * event is cancelled by another listener (like a protection plugin), the hit has no effect, but the projectile is
+     * still consumed, the same as in {@link #onDirectHitDamage(EntityDamageByEntityEvent)}. The damage itself is dealt
+     * without a damager, since there might be no projectile entity to be the damager, which also keeps the hit from
+     * counting as the shooter hitting the entity in melee.
+     *
+     * @param hitEntity the living entity that was hit
+     */
+    private void hitEntityVirtually(@NotNull LivingEntity hitEntity) {
+        double damage = damageOnDirectHit;
+        if (currentProjectile != null) {
+            @SuppressWarnings("deprecation")
+            EntityDamageByEntityEvent event = new EntityDamageByEntityEvent(currentProjectile, hitEntity,
+                    EntityDamageEvent.DamageCause.PROJECTILE, damageOnDirectHit);
+            callingHitDamageEvent = true;
+            Bukkit.getPluginManager().callEvent(event);
+            callingHitDamageEvent = false;
+
+            if (event.isCancelled()) {
+                if (consumeOnDirectHit) remove();
+                return;
             }
+            if (damage > 0) damage = event.getDamage(); // Hits without damage deal none, as for a vanilla hit
+        }
+
+        if (onHitEntity != null && checkFriendlyFire(hitEntity)) onHitEntity.accept(this, hitEntity);
+
+        if (damage > 0) {
+            hitEntity.damage(damage);
+
+            Vector knockback = new Vector(velocityX, 0, velocityZ);
+            if (knockback.lengthSquared() > 0) knockback.normalize().multiply(DIRECT_HIT_KNOCKBACK);
+            Vector hitVelocity = hitEntity.getVelocity().multiply(0.5).add(knockback);
+            hitVelocity.setY(Math.min(DIRECT_HIT_KNOCKBACK, hitVelocity.getY() + DIRECT_HIT_KNOCKBACK));
+            hitEntity.setVelocity(hitVelocity);
+        }
+
+        if (consumeOnDirectHit) remove();
+    }
+
+    /**
+     * Sweeps the specified movement of the projectile from its position against the living entities (other than the
+     * shooter) in the way, storing the first contact in {@link #entityHit}.
+     *
+     * @param dx the movement along the x-axis
+     * @param dy the movement along the y-axis
+     * @param dz the movement along the z-axis
+     * @return the first living entity in the way, or null if none
+     */
+    @Nullable
+    private LivingEntity traceEntity(double dx, double dy, double dz) {
+        if (dx * dx + dy * dy + dz * dz < 0.0001) return null;
+
+        return engine.getLivingEntities(world).sweep(x, y, z, dx, dy, dz, RADIUS, source, ignoredEntityId,
+                engine.getSeenTick(source), entityHit);
+    }
+
+    /**
+     * Sweeps the movement of the projectile entity in this tick against where its shooter saw the other players, and
+     * hits the first player in the way the same way as a virtual projectile would, before the vanilla collision can
+     * miss it.
+     * <p>
+     * Only projectiles that are consumed on direct hits are lag compensated, since they are removed by the hit and can
+     * therefore not also be hit by the vanilla collision. Other entities than players are left to the vanilla
+     * collision.
+     *
+     * @return if a player was hit and the projectile removed
+     */
+    private boolean hitPlayerLagCompensated() {
+        if (!consumeOnDirectHit || isGrounded() || !engine.isLagCompensated()) return false;
+        long seenTick = engine.getSeenTick(source);
+        if (seenTick < 0) return false;
+
+        double fraction = sweepBlocks(velocityX, velocityY, velocityZ) ? sweepHit.getFraction() : 1;
+        LivingEntity hitEntity = engine.getLivingEntities(world).sweep(x, y, z,
+                velocityX * fraction, velocityY * fraction, velocityZ * fraction, RADIUS, source, -1, seenTick, entityHit);
+        if (!(hitEntity instanceof Player)) return false;
+
+        playBounceEffects(null);
+        hitEntityVirtually(hitEntity);
+        return removed;
+    }
+
+    /**
+     * Sweeps the specified movement of the projectile from its position against the collision boxes of the blocks in
+     * the way, storing the first contact in {@link #sweepHit}.
+     *
+     * @param dx the movement along the x-axis
+     * @param dy the movement along the y-axis
+     * @param dz the movement along the z-axis
+     * @return if a block was hit along the movement
+     */
+    private boolean sweepBlocks(double dx, double dy, double dz) {
+        return SweptSphere.sweep(engine.getCollisionView(world), x, y, z, dx, dy, dz, RADIUS, sweepHit);
+    }
+
+    /**
+     * Moves the projectile to the point of contact of the last sweep, along the specified movement that was swept,
+     * keeping a small distance from the surface to not start inside of it at the next sweep.
+     *
+     * @param dx the movement that was swept along the x-axis
+     * @param dy the movement that was swept along the y-axis
+     * @param dz the movement that was swept along the z-axis
+     */
+    private void moveToContact(double dx, double dy, double dz) {
+        double fraction = sweepHit.getFraction();
+        x += dx * fraction + sweepHit.getNormalX() * CONTACT_SEPARATION;
+        y += dy * fraction + sweepHit.getNormalY() * CONTACT_SEPARATION;
+        z += dz * fraction + sweepHit.getNormalZ() * CONTACT_SEPARATION;
+    }
+
+    /**
+     * Bounces the projectile on the block that was hit in the last sweep, moving it to the point of contact, applying
+     * the bounce logic on its velocity and playing the bounce effects.
+     *
+     * @param dx the movement that was swept along the x-axis
+     * @param dy the movement that was swept along the y-axis
+     * @param dz the movement that was swept along the z-axis
+     */
+    private void bounceOnBlock(double dx, double dy, double dz) {
+        BlockFace hitBlockFace = sweepHit.getBlockFace();
+        moveToContact(dx, dy, dz);
+        ignoredEntityId = -1;
+
+        playBounceEffects(hitBlockFace);
+        applyBouncePhysics(hitBlockFace);
+    }
+
+    /**
+     * Queues the bounce sound and, if enabled, a bounce mark at the current position, based on the current velocity
+     * of the projectile (before the bounce), to be sent together with the other bounces of the tick.
+     *
+     * @param hitBlockFace the block face that was hit, or null if no block face was hit
+     */
+    private void playBounceEffects(@Nullable BlockFace hitBlockFace) {
+        double bounceMagnitude = hitBlockFace != null
+                ? Math.abs(velocityX * hitBlockFace.getModX() + velocityY * hitBlockFace.getModY() + velocityZ * hitBlockFace.getModZ())
+                : Math.sqrt(velocityX * velocityX + velocityY * velocityY + velocityZ * velocityZ);
+        float volume = (float) bounceMagnitude;
+        float pitch = (float) (1.8f / (bounceMagnitude + 1f));
+        engine.getBounceFeedback().add(world, x, y, z, volume, pitch, showBounceMarks);
+    }
+
+    /**
+     * Applies the bounce logic on the velocity according to the block face that was hit, either bouncing or setting
+     * the projectile as grounded.
+     *
+     * @param hitBlockFace the block face that was hit, or null if no block face was hit
+     * @return if the projectile got grounded instead of bouncing
+     */
+    private boolean applyBouncePhysics(@Nullable BlockFace hitBlockFace) {
+        // Any roll is started over with the new velocity
+        stopRoll();
+
+        // Check if the bounce was on the ground (or the roof if gravity is inverted)
+        boolean groundBounce = hitBlockFace != null && ((gravity > 0 && hitBlockFace.getModY() > 0) || (gravity < 0 && hitBlockFace.getModY() < 0));
+
+        if ((groundBounce && Math.abs(velocityY) <= Y_VELOCITY_CONSIDERED_GROUNDED) || isSticky()) {
+            // Set grounded
+            grounded = true;
+
+            // If sticky, stop completely
+            if (isSticky()) setVelocity(0, 0, 0);
+            else setVelocity(velocityX, 0, velocityZ);
+            return true;
+        }
+
+        // Apply bounce physics
+        bounce(hitBlockFace);
+        return false;
+    }
+
+    /**
+     * Applies bounce physics on the velocity according to the block face that was hit.
+     * <p>
+     * If no block face was hit, the bounce simply goes the opposite direction.
+     *
+     * @param hitBlockFace The block face that was hit, or null if no block face was hit
+     */
+    private void bounce(@Nullable BlockFace hitBlockFace) {
+        if (hitBlockFace != null && (hitBlockFace.getModX() != 0 || hitBlockFace.getModY() != 0 || hitBlockFace.getModZ() != 0)) {
+            setVelocity(
+                    bounceComponent(velocityX, hitBlockFace.getModX()),
+                    bounceComponent(velocityY, hitBlockFace.getModY()),
+                    bounceComponent(velocityZ, hitBlockFace.getModZ()));
         } else {
-            velocity.multiply(-1);
-            velocity.multiply(getRestitutionFactor());
+            setVelocity(
+                    -velocityX * getRestitutionFactor(),
+                    -velocityY * getRestitutionFactor(),
+                    -velocityZ * getRestitutionFactor());
         }
     }
 
+    /**
+     * Returns the specified velocity component after a bounce on a surface, reflected with restitution along the
+     * normal and slowed by friction along the surface.
+     *
+     * @param velocity the velocity component before the bounce
+     * @param mod      the component of the normal of the surface along the same axis
+     * @return the velocity component after the bounce
+     */
+    private double bounceComponent(double velocity, int mod) {
+        if (mod != 0) return Math.abs(velocity) * mod * getRestitutionFactor();
+        return velocity * getFrictionFactor();
+    }
+
     /**
      * Checks if the given hit entity is allowed to be affected by this projectile in regards to friendly fire.
      *
@@ -675,7 +1492,7 @@ public class BouncyProjectile implements Listener {
      * @return if the given hit entity is allowed to be affected by this projectile
      */
     private boolean checkFriendlyFire(@NotNull Entity hitEntity) {
-        return !(!friendlyFire && sourceIsPlayer && fromSameTeam((Player) source, hitEntity));
+        return !(!friendlyFire && sourceIsPlayer && engine.isSameTeam((Player) source, hitEntity));
     }
 
 
@@ -748,20 +1565,4 @@ public class BouncyProjectile implements Listener {
         // The center of the projectile at the moment of impact
         return lastLocation.clone().add(velocity.clone().multiply(distanceToSurface / projectedVelocity).subtract(projectileDirection.clone().multiply(offset)));
     }
-
-    /**
-     * Returns if the given other entity is on the specified player's team.
-     *
-     * @param player the player to get the team from
-     * @param other  the entity to check if on the player's team
-     * @return if the other entity is on the player's team
-     */
-    private static boolean fromSameTeam(@NotNull Player player, @NotNull Entity other) {
-        if (player.getUniqueId().equals(other.getUniqueId())) return true;
-
-        Scoreboard scoreboard = player.getScoreboard();
-        Team team1 = scoreboard.getEntryTeam(player.getName());
-        Team team2 = scoreboard.getEntryTeam(other.getName());
-        return team1 != null && team1.equals(team2);
-    }
 }
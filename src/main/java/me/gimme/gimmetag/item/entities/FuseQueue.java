@@ -0,0 +1,148 @@
+package me.gimme.gimmetag.item.entities;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The live bouncy projectiles ordered by their fuse deadlines, the earliest first.
+ * <p>
+ * The projectiles are kept in a binary heap where every projectile knows its index, so that a removed projectile can
+ * be taken out of the queue, and a changed deadline be moved into place, in logarithmic time. Removed projectiles are
+ * therefore never left in the queue until their deadlines.
+ */
+class FuseQueue {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private BouncyProjectile[] heap = new BouncyProjectile[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return the projectile with the earliest fuse deadline, or null if the queue is empty
+     */
+    @Nullable
+    BouncyProjectile peek() {
+        return size == 0 ? null : heap[0];
+    }
+
+    /**
+     * Adds the specified projectile to the queue, by its current fuse deadline.
+     *
+     * @param bouncyProjectile the projectile to add, which must not already be in the queue
+     */
+    void add(@NotNull BouncyProjectile bouncyProjectile) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, heap.length * 2);
+
+        heap[size] = bouncyProjectile;
+        bouncyProjectile.fuseSlot = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes and returns the projectile with the earliest fuse deadline.
+     *
+     * @return the removed projectile, or null if the queue is empty
+     */
+    @Nullable
+    BouncyProjectile poll() {
+        if (size == 0) return null;
+
+        BouncyProjectile first = heap[0];
+        removeAt(0);
+        return first;
+    }
+
+    /**
+     * Removes the specified projectile from the queue, if it is in it.
+     *
+     * @param bouncyProjectile the projectile to remove
+     */
+    void remove(@NotNull BouncyProjectile bouncyProjectile) {
+        int slot = bouncyProjectile.fuseSlot;
+        if (slot < 0 || slot >= size || heap[slot] != bouncyProjectile) return;
+
+        removeAt(slot);
+    }
+
+    /**
+     * Moves the specified projectile into place after its fuse deadline has changed, if it is in the queue.
+     *
+     * @param bouncyProjectile the projectile whose fuse deadline has changed
+     */
+    void update(@NotNull BouncyProjectile bouncyProjectile) {
+        int slot = bouncyProjectile.fuseSlot;
+        if (slot < 0 || slot >= size || heap[slot] != bouncyProjectile) return;
+
+        siftDown(siftUp(slot));
+    }
+
+    /**
+     * Removes all projectiles from the queue.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i].fuseSlot = -1;
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Removes the projectile at the specified index, moving the last projectile into its place.
+     */
+    private void removeAt(int slot) {
+        heap[slot].fuseSlot = -1;
+
+        BouncyProjectile last = heap[--size];
+        heap[size] = null;
+        if (slot == size) return;
+
+        heap[slot] = last;
+        last.fuseSlot = slot;
+        siftDown(siftUp(slot));
+    }
+
+    /**
+     * Moves the projectile at the specified index up the heap while its deadline is earlier than its parent's.
+     *
+     * @return the new index of the projectile
+     */
+    private int siftUp(int slot) {
+        BouncyProjectile bouncyProjectile = heap[slot];
+
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (heap[parent].fuseDeadline <= bouncyProjectile.fuseDeadline) break;
+            move(heap[parent], slot);
+            slot = parent;
+        }
+
+        move(bouncyProjectile, slot);
+        return slot;
+    }
+
+    /**
+     * Moves the projectile at the specified index down the heap while its deadline is later than its children's.
+     */
+    private void siftDown(int slot) {
+        BouncyProjectile bouncyProjectile = heap[slot];
+
+        while (true) {
+            int child = slot * 2 + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].fuseDeadline < heap[child].fuseDeadline) child++;
+            if (bouncyProjectile.fuseDeadline <= heap[child].fuseDeadline) break;
+            move(heap[child], slot);
+            slot = child;
+        }
+
+        move(bouncyProjectile, slot);
+    }
+
+    private void move(@NotNull BouncyProjectile bouncyProjectile, int slot) {
+        heap[slot] = bouncyProjectile;
+        bouncyProjectile.fuseSlot = slot;
+    }
+}
@@ -0,0 +1,203 @@
+package me.gimme.gimmetag.item.entities;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.events.PacketListener;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the recent bounding boxes and the latency of each player, so that hits of projectiles thrown by a player can
+ * be tested against the other players where the thrower saw them, instead of where they are on the server.
+ * <p>
+ * The boxes of each player are kept in a bounded ring buffer of primitive doubles, recorded every tick without
+ * allocating anything. The latency of a player is the round trip time of the keep-alive packets, the same way as the
+ * server measures the ping.
+ */
+class LagCompensation {
+
+    private static final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+    private static final double LATENCY_SMOOTHING = 0.25; // Weight of a new round trip time in the latency, as vanilla
+
+    private final Map<UUID, History> historyByPlayer = new ConcurrentHashMap<>();
+    private final Location playerLocation = new Location(null, 0, 0, 0);
+    private final PacketListener keepAliveListener;
+
+    private int maxRewindTicks;
+    private boolean enabled;
+
+    LagCompensation(@NotNull Plugin plugin) {
+        this.keepAliveListener = new PacketAdapter(plugin, PacketType.Play.Server.KEEP_ALIVE, PacketType.Play.Client.KEEP_ALIVE) {
+            @Override
+            public void onPacketSending(PacketEvent event) {
+                History history = historyByPlayer.get(event.getPlayer().getUniqueId());
+                if (history == null) return;
+
+                history.keepAliveId = event.getPacket().getLongs().read(0);
+                history.keepAliveSentNanos = System.nanoTime();
+            }
+
+            @Override
+            public void onPacketReceiving(PacketEvent event) {
+                History history = historyByPlayer.get(event.getPlayer().getUniqueId());
+                if (history == null || history.keepAliveSentNanos == 0) return;
+                if (event.getPacket().getLongs().read(0) != history.keepAliveId) return;
+
+                double roundTripMillis = (System.nanoTime() - history.keepAliveSentNanos) / 1.0E6;
+                history.latencyMillis = history.latencyMillis == 0 ? roundTripMillis
+                        : history.latencyMillis * (1 - LATENCY_SMOOTHING) + roundTripMillis * LATENCY_SMOOTHING;
+                history.keepAliveSentNanos = 0;
+            }
+        };
+    }
+
+    /**
+     * Enables or disables the lag compensation.
+     *
+     * @param enabled        if hits should be tested against where the thrower saw the other players
+     * @param maxRewindTicks the max amount of ticks to rewind the other players
+     */
+    void setEnabled(boolean enabled, int maxRewindTicks) {
+        disable();
+        this.maxRewindTicks = Math.max(0, maxRewindTicks);
+        this.enabled = enabled && this.maxRewindTicks > 0;
+        if (this.enabled) protocolManager.addPacketListener(keepAliveListener);
+    }
+
+    /**
+     * Disables the lag compensation and forgets all players.
+     */
+    void disable() {
+        if (enabled) protocolManager.removePacketListener(keepAliveListener);
+        enabled = false;
+        historyByPlayer.clear();
+    }
+
+    /**
+     * @return if the lag compensation is enabled
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the current bounding boxes of the specified online players, and forgets the players that have left.
+     *
+     * @param tick          the current engine tick
+     * @param onlinePlayers the online players
+     */
+    void record(long tick, @NotNull List<Player> onlinePlayers) {
+        if (!enabled) return;
+
+        for (int i = 0; i < onlinePlayers.size(); i++) {
+            Player player = onlinePlayers.get(i);
+            History history = historyByPlayer.get(player.getUniqueId());
+            if (history == null) {
+                history = new History(maxRewindTicks + 1);
+                historyByPlayer.put(player.getUniqueId(), history);
+            }
+
+            player.getLocation(playerLocation);
+            history.record(tick, playerLocation.getX(), playerLocation.getY(), playerLocation.getZ(),
+                    player.getWidth(), player.getHeight());
+        }
+
+        // The history of a player that left stops being recorded, and is only looked for when there is one
+        if (historyByPlayer.size() <= onlinePlayers.size()) return;
+        for (Iterator<History> iterator = historyByPlayer.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isStale(tick)) iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the tick that the specified player sees the other players in, based on the latency of the player.
+     *
+     * @param player      the player to get the seen tick of
+     * @param currentTick the current engine tick
+     * @return the tick that the player sees the other players in, or -1 if it should not be rewound
+     */
+    long getSeenTick(@NotNull Player player, long currentTick) {
+        if (!enabled) return -1;
+        History history = historyByPlayer.get(player.getUniqueId());
+        if (history == null) return -1;
+
+        int rewindTicks = (int) Math.min(maxRewindTicks, Math.round(history.latencyMillis / 50));
+        return rewindTicks > 0 ? currentTick - rewindTicks : -1;
+    }
+
+    /**
+     * Copies the bounding box of the specified player at the specified tick into the given array, as min x, y, z
+     * followed by max x, y, z.
+     *
+     * @param player the player to get the bounding box of
+     * @param tick   the tick to get the bounding box at
+     * @param box    the array to copy the bounding box into, starting at the given offset
+     * @param offset the index of the array to copy the bounding box to
+     * @return if the bounding box at the tick was recorded
+     */
+    boolean getBox(@NotNull Player player, long tick, @NotNull double[] box, int offset) {
+        History history = historyByPlayer.get(player.getUniqueId());
+        return history != null && history.getBox(tick, box, offset);
+    }
+
+
+    /**
+     * The bounding boxes of a player in the last ticks, and the latency of the player.
+     */
+    private static class History {
+        private final long[] ticks;
+        private final double[] boxes;
+        private long lastTick = -1;
+
+        // Written from the network threads
+        private volatile long keepAliveId;
+        private volatile long keepAliveSentNanos;
+        private volatile double latencyMillis;
+
+        private History(int length) {
+            this.ticks = new long[length];
+            this.boxes = new double[length * 6];
+            Arrays.fill(ticks, -1);
+        }
+
+        private void record(long tick, double x, double y, double z, double width, double height) {
+            int i = (int) (tick % ticks.length);
+            int b = i * 6;
+            double halfWidth = width / 2;
+
+            ticks[i] = tick;
+            boxes[b] = x - halfWidth;
+            boxes[b + 1] = y;
+            boxes[b + 2] = z - halfWidth;
+            boxes[b + 3] = x + halfWidth;
+            boxes[b + 4] = y + height;
+            boxes[b + 5] = z + halfWidth;
+            lastTick = tick;
+        }
+
+        private boolean getBox(long tick, @NotNull double[] box, int offset) {
+            if (tick < 0) return false;
+            int i = (int) (tick % ticks.length);
+            if (ticks[i] != tick) return false;
+
+            System.arraycopy(boxes, i * 6, box, offset, 6);
+            return true;
+        }
+
+        private boolean isStale(long tick) {
+            return lastTick != tick;
+        }
+    }
+}
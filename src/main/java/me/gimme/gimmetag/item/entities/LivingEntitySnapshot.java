@@ -0,0 +1,231 @@
+package me.gimme.gimmetag.item.entities;
+
+import me.gimme.gimmetag.item.entities.collision.SweptSphere;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The living entities of a world with their bounding boxes, and the players of the world, gathered at most once per
+ * tick and shared by all projectiles in the world.
+ * <p>
+ * The bounding boxes are kept in a flat array that is reused between ticks, so that sweeping a projectile against the
+ * entities does not allocate anything. With lag compensation, the boxes of players can be rewound to an earlier tick.
+ * <p>
+ * Gathering the living entities from the world allocates a new list, so the other living entities than players are
+ * kept between ticks instead. They are gathered from the world again every few ticks, or when chunks have loaded, and
+ * in between dropped when no longer valid and added when told that they spawned. The players are read from the online
+ * players kept by the engine every tick.
+ */
+class LivingEntitySnapshot {
+
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int GATHER_INTERVAL_TICKS = 20; // Max ticks between gathering the living entities again
+
+    private final World world;
+    private final ProjectileEngine engine;
+    private final double[] rewoundBox = new double[6];
+    private final Location entityLocation = new Location(null, 0, 0, 0); // Reused to read the locations of entities
+    private final List<Player> players = new ArrayList<>();
+    private final List<LivingEntity> nonPlayers = new ArrayList<>(); // Kept between ticks, but not always up to date
+    private boolean gathered; // If the other living entities than players have been gathered since invalidated
+    private long gatherTick;
+    private LivingEntity[] entities = new LivingEntity[INITIAL_CAPACITY];
+    private double[] boxes = new double[INITIAL_CAPACITY * 6];
+    private int entityCount;
+    private long tick = -1;
+
+    LivingEntitySnapshot(@NotNull World world, @NotNull ProjectileEngine engine) {
+        this.world = world;
+        this.engine = engine;
+    }
+
+    /**
+     * Adds the specified living entity, that just spawned in the world, to the kept living entities.
+     *
+     * @param entity the living entity that spawned
+     */
+    void add(@NotNull LivingEntity entity) {
+        if (gathered && !(entity instanceof Player)) nonPlayers.add(entity);
+    }
+
+    /**
+     * Makes the living entities be gathered from the world again at the next refresh, for when living entities have
+     * been added without spawning (like when loaded with a chunk).
+     */
+    void invalidate() {
+        gathered = false;
+    }
+
+    /**
+     * Updates the living entities and players of the world, and their bounding boxes, unless already done in the
+     * specified tick.
+     * <p>
+     * Dead entities and spectators are left out of the living entities, since projectiles cannot hit them.
+     *
+     * @param tick the current engine tick
+     */
+    void refresh(long tick) {
+        if (this.tick == tick) return;
+        this.tick = tick;
+
+        Arrays.fill(entities, 0, entityCount, null);
+        entityCount = 0;
+        players.clear();
+
+        if (!gathered || tick - gatherTick >= GATHER_INTERVAL_TICKS) gather(tick);
+
+        List<Player> onlinePlayers = engine.getOnlinePlayers();
+        for (int i = 0; i < onlinePlayers.size(); i++) {
+            Player player = onlinePlayers.get(i);
+            if (player.isDead() || !player.getWorld().equals(world)) continue;
+            players.add(player);
+            if (player.getGameMode() != GameMode.SPECTATOR) addBox(player);
+        }
+
+        for (int i = nonPlayers.size() - 1; i >= 0; i--) {
+            LivingEntity entity = nonPlayers.get(i);
+            if (entity.isValid()) {
+                addBox(entity);
+                continue;
+            }
+
+            // Removed from the world, so swap in the last entity to not shift the list
+            int last = nonPlayers.size() - 1;
+            nonPlayers.set(i, nonPlayers.get(last));
+            nonPlayers.remove(last);
+        }
+    }
+
+    /**
+     * Gathers the living entities other than players from the world.
+     */
+    private void gather(long tick) {
+        gathered = true;
+        gatherTick = tick;
+        nonPlayers.clear();
+
+        for (LivingEntity entity : world.getLivingEntities()) {
+            if (!(entity instanceof Player)) nonPlayers.add(entity);
+        }
+    }
+
+    /**
+     * Adds the bounding box of the specified living entity, from its location and size, to not allocate a bounding
+     * box.
+     */
+    private void addBox(@NotNull LivingEntity entity) {
+        if (entityCount == entities.length) {
+            entities = Arrays.copyOf(entities, entities.length * 2);
+            boxes = Arrays.copyOf(boxes, boxes.length * 2);
+        }
+
+        entity.getLocation(entityLocation);
+        double halfWidth = entity.getWidth() / 2;
+        int i = entityCount * 6;
+        boxes[i] = entityLocation.getX() - halfWidth;
+        boxes[i + 1] = entityLocation.getY();
+        boxes[i + 2] = entityLocation.getZ() - halfWidth;
+        boxes[i + 3] = entityLocation.getX() + halfWidth;
+        boxes[i + 4] = entityLocation.getY() + entity.getHeight();
+        boxes[i + 5] = entityLocation.getZ() + halfWidth;
+        entities[entityCount++] = entity;
+    }
+
+    /**
+     * @return the players in the world, including spectators
+     */
+    @NotNull
+    List<Player> getPlayers() {
+        return players;
+    }
+
+    /**
+     * Adds the living entities whose bounding box centers are within the specified sphere, and that pass the specified
+     * filter, to the given collection.
+     *
+     * @param x      the x-coordinate of the center of the sphere
+     * @param y      the y-coordinate of the center of the sphere
+     * @param z      the z-coordinate of the center of the sphere
+     * @param radius the radius of the sphere
+     * @param filter the filter of the living entities to add
+     * @param result the collection to add the living entities in the sphere to
+     */
+    void collectInSphere(double x, double y, double z, double radius, @NotNull Predicate<? super LivingEntity> filter,
+                         @NotNull Collection<? super LivingEntity> result) {
+        double radiusSquared = radius * radius;
+
+        for (int e = 0; e < entityCount; e++) {
+            int i = e * 6;
+            double dx = (boxes[i] + boxes[i + 3]) / 2 - x;
+            double dy = (boxes[i + 1] + boxes[i + 4]) / 2 - y;
+            double dz = (boxes[i + 2] + boxes[i + 5]) / 2 - z;
+            if (dx * dx + dy * dy + dz * dz > radiusSquared) continue;
+
+            LivingEntity entity = entities[e];
+            if (filter.test(entity)) result.add(entity);
+        }
+    }
+
+    /**
+     * Sweeps a sphere with the specified radius from the specified position along the specified movement against the
+     * bounding boxes of the living entities, and returns the first entity that was hit, storing the contact in the
+     * given hit.
+     * <p>
+     * If a seen tick is specified, the players are swept against where they were in that tick, if recorded by the lag
+     * compensation, instead of where they are now.
+     *
+     * @param x                the start x-coordinate of the center of the sphere
+     * @param y                the start y-coordinate of the center of the sphere
+     * @param z                the start z-coordinate of the center of the sphere
+     * @param dx               the movement along the x-axis
+     * @param dy               the movement along the y-axis
+     * @param dz               the movement along the z-axis
+     * @param radius           the radius of the sphere
+     * @param excluded         an entity to not hit, or null
+     * @param excludedEntityId the entity id of another entity to not hit, or -1
+     * @param seenTick         the tick to rewind the players to, or -1 to not rewind them
+     * @param hit              the hit to store the first contact in, if any
+     * @return the first living entity that was hit, or null if none
+     */
+    @Nullable
+    LivingEntity sweep(double x, double y, double z, double dx, double dy, double dz, double radius,
+                       @Nullable Entity excluded, int excludedEntityId, long seenTick, @NotNull SweptSphere.Hit hit) {
+        LivingEntity first = null;
+        double firstContact = 1;
+
+        for (int e = 0; e < entityCount; e++) {
+            LivingEntity entity = entities[e];
+            if (entity == excluded || entity.getEntityId() == excludedEntityId) continue;
+
+            double[] entityBoxes = boxes;
+            int i = e * 6;
+            if (seenTick >= 0 && entity instanceof Player
+                    && engine.getRewoundBox((Player) entity, seenTick, rewoundBox, 0)) {
+                entityBoxes = rewoundBox;
+                i = 0;
+            }
+
+            if (!SweptSphere.sweepBox(x, y, z, dx, dy, dz,
+                    entityBoxes[i] - radius, entityBoxes[i + 1] - radius, entityBoxes[i + 2] - radius,
+                    entityBoxes[i + 3] + radius, entityBoxes[i + 4] + radius, entityBoxes[i + 5] + radius,
+                    firstContact, hit)) continue;
+
+            first = entity;
+            firstContact = hit.getFraction();
+        }
+
+        return first;
+    }
+}
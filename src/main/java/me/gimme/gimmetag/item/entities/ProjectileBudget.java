@@ -0,0 +1,38 @@
+package me.gimme.gimmetag.item.entities;
+
+/**
+ * Caps on the amount of live bouncy projectiles per player, per arena (world) and on the whole server.
+ * <p>
+ * The load of a launch is how close the fullest of the caps is to being reached, where 1 means that a cap is reached.
+ * A negative cap means no limit.
+ */
+public class ProjectileBudget {
+
+    private final int perPlayer;
+    private final int perArena;
+    private final int global;
+
+    public ProjectileBudget(int perPlayer, int perArena, int global) {
+        this.perPlayer = perPlayer;
+        this.perArena = perArena;
+        this.global = global;
+    }
+
+    /**
+     * Returns the load of the caps with the specified amounts of live projectiles.
+     *
+     * @param playerCount the amount of live projectiles of the launching player
+     * @param arenaCount  the amount of live projectiles in the arena of the launching player
+     * @param globalCount the amount of live projectiles on the whole server
+     * @return the fraction of the fullest cap that is used, where 1 or more means that a cap is reached
+     */
+    double getLoad(int playerCount, int arenaCount, int globalCount) {
+        return Math.max(getLoad(playerCount, perPlayer), Math.max(getLoad(arenaCount, perArena), getLoad(globalCount, global)));
+    }
+
+    private static double getLoad(int count, int cap) {
+        if (cap < 0) return 0;
+        if (cap == 0) return Double.POSITIVE_INFINITY;
+        return (double) count / cap;
+    }
+}
@@ -0,0 +1,757 @@
+package me.gimme.gimmetag.item.entities;
+
+import me.gimme.gimmetag.GimmeTag;
+import me.gimme.gimmetag.item.entities.collision.ArenaCollisionCache;
+import me.gimme.gimmetag.item.entities.collision.BlockCollisionView;
+import me.gimme.gimmetag.item.entities.collision.SweptSphere;
+import me.gimme.gimmetag.item.entities.collision.VoxelRaycast;
+import me.gimme.gimmetag.tag.Role;
+import me.gimme.gimmetag.tag.TagManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.entity.ExpBottleEvent;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Owns all live bouncy projectiles and dispatches the events concerning them.
+ * <p>
+ * Only this engine is registered as a listener. Events are routed to the affected bouncy projectile through an index of
+ * entity ids, instead of every live bouncy projectile checking every event on the server.
+ * <p>
+ * All live bouncy projectiles are also updated from a single task, iterating a compact array of the live projectiles,
+ * while their max lifetimes are kept in a queue ordered by deadline. The scheduler overhead therefore stays the same no
+ * matter how many projectiles are alive.
+ * <p>
+ * Projectiles that come to rest (on the ground or stuck in a block) are put to sleep, which takes them out of the
+ * updates until they are woken by a change of a block next to them, by a hit, or when they should explode. Sleeping
+ * projectiles are also woken at a regular interval to catch changes that have no event, such as new players coming
+ * within range of a virtual projectile. The cost of the updates therefore scales with the moving projectiles.
+ * <p>
+ * The amount of live projectiles is bounded by a {@link ProjectileBudget}. As the budget gets used up, new projectiles
+ * are degraded step by step, to keep the cost of the projectiles in check until no more can be launched.
+ */
+public class ProjectileEngine implements Listener {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SLEEP_CHECK_TICKS = 20; // Max ticks between the wakeups of a sleeping projectile
+    private static final double NO_TRAIL_LOAD = 0.5; // Budget load from which new projectiles have no trail
+    private static final double NO_BOUNCE_MARKS_LOAD = 0.75; // Budget load from which new projectiles have no bounce marks
+    private static final double SHORT_FUSE_LOAD = 0.9; // Budget load from which new projectiles get shorter, merged fuses
+    private static final int FUSE_MERGE_TICKS = 10; // Shortened fuses expire on multiples of this, to explode together
+    private static final int MAX_LINE_OF_SIGHT_RAYS = 256; // Max rays cast per tick, after which lines of sight are blocked
+
+    private final Plugin plugin;
+    private final ArenaCollisionCache collisionCache;
+    private final ProjectileBudget budget;
+    private final BukkitRunnable tickTask;
+
+    private BouncyProjectile[] awakeProjectiles = new BouncyProjectile[INITIAL_CAPACITY];
+    private int awakeProjectileCount;
+    private final Map<Long, List<BouncyProjectile>> sleepingProjectilesByBlock = new HashMap<>();
+    private final Map<Long, List<BouncyProjectile>> wakeupsByTick = new HashMap<>();
+    private int sleepingProjectileCount;
+    private final Map<Integer, BouncyProjectile> projectilesByEntityId = new HashMap<>();
+    private final FuseQueue fuseDeadlines = new FuseQueue();
+    private final Map<World, LivingEntitySnapshot> livingEntitiesByWorld = new HashMap<>();
+    private final List<Player> onlinePlayers = new ArrayList<>(); // Kept from the join and quit events, to index
+    private final BounceFeedback bounceFeedback = new BounceFeedback();
+    private final TrailRenderer trailRenderer = new TrailRenderer();
+    private final boolean protocolLibPresent;
+    @Nullable
+    private LagCompensation lagCompensation; // Only created when enabled, since it needs ProtocolLib
+    @Nullable
+    private TagManager tagManager;
+    private final List<BouncyProjectile> explosions = new ArrayList<>();
+    private final ProjectileGrid grid = new ProjectileGrid();
+    private final List<BouncyProjectile> nearbyProjectiles = new ArrayList<>();
+    private long gridTick = -1; // Engine tick when the grid was last rebuilt
+    private final SweptSphere.Hit rayHit = new SweptSphere.Hit();
+    private final Location entityLocation = new Location(null, 0, 0, 0);
+    private int lineOfSightRays; // Rays cast this tick
+    private final Map<UUID, Integer> projectileCountByShooter = new HashMap<>();
+    private final Map<World, Integer> projectileCountByWorld = new HashMap<>();
+
+    private long currentTick;
+
+    public ProjectileEngine(@NotNull Plugin plugin, @NotNull ArenaCollisionCache collisionCache,
+                            @NotNull ProjectileBudget budget) {
+        this.plugin = plugin;
+        this.collisionCache = collisionCache;
+        this.budget = budget;
+        this.protocolLibPresent = plugin.getServer().getPluginManager().getPlugin(GimmeTag.PROTOCOL_LIB_NAME) != null;
+        collisionCache.setOnBlockChange(this::onBlockChange);
+        onlinePlayers.addAll(plugin.getServer().getOnlinePlayers());
+
+        tickTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        };
+        tickTask.runTaskTimer(plugin, 0, 1);
+    }
+
+    /**
+     * Stops the engine and removes all live bouncy projectiles from the world without exploding.
+     */
+    public void onDisable() {
+        if (!tickTask.isCancelled()) tickTask.cancel();
+
+        for (BouncyProjectile bouncyProjectile : getLiveProjectiles()) {
+            bouncyProjectile.remove();
+        }
+        fuseDeadlines.clear();
+        wakeupsByTick.clear();
+        projectileCountByShooter.clear();
+        projectileCountByWorld.clear();
+        livingEntitiesByWorld.clear();
+        onlinePlayers.clear();
+        explosions.clear();
+        bounceFeedback.clear();
+        if (lagCompensation != null) lagCompensation.disable();
+        lagCompensation = null;
+    }
+
+    /**
+     * @return the plugin that this engine schedules tasks from
+     */
+    @NotNull
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Returns the view of the block collision shapes of the specified world, to sweep the projectiles against.
+     *
+     * @param world the world to get the collision view of
+     * @return the view of the block collision shapes of the world
+     */
+    @NotNull
+    public BlockCollisionView getCollisionView(@NotNull World world) {
+        return collisionCache.getCollisionView(world);
+    }
+
+    /**
+     * Returns the living entities and players of the specified world, gathered at most once per tick and shared by all
+     * projectiles in the world.
+     *
+     * @param world the world to get the living entities of
+     * @return the living entities and players of the world as of this tick
+     */
+    @NotNull
+    LivingEntitySnapshot getLivingEntities(@NotNull World world) {
+        LivingEntitySnapshot snapshot = livingEntitiesByWorld.get(world);
+        if (snapshot == null) {
+            snapshot = new LivingEntitySnapshot(world, this);
+            livingEntitiesByWorld.put(world, snapshot);
+        }
+        snapshot.refresh(currentTick);
+        return snapshot;
+    }
+
+    /**
+     * Returns the online players, in a list that is kept up to date from the join and quit events, to be iterated by
+     * index instead of allocating an iterator of the online players of the server every tick.
+     *
+     * @return the online players
+     */
+    @NotNull
+    List<Player> getOnlinePlayers() {
+        return onlinePlayers;
+    }
+
+    /**
+     * @return the queue of the bounce sounds and bounce marks, sent to the clients at the end of every tick
+     */
+    @NotNull
+    BounceFeedback getBounceFeedback() {
+        return bounceFeedback;
+    }
+
+    /**
+     * @return the sender of the trail particles to the players that can see them
+     */
+    @NotNull
+    TrailRenderer getTrailRenderer() {
+        return trailRenderer;
+    }
+
+    /**
+     * Sets the distances within which players are sent the trail particles of the projectiles.
+     *
+     * @param viewDistance     the max distance for players to be sent the trail particles
+     * @param fullRateDistance the max distance for players to be sent every trail particle, with only some of the
+     *                         trail particles sent to players further away
+     */
+    public void setTrailDistances(double viewDistance, double fullRateDistance) {
+        trailRenderer.setDistances(viewDistance, fullRateDistance);
+    }
+
+    /**
+     * Sets the tag manager to get the roles of the players from, which are their teams when checking friendly fire.
+     *
+     * @param tagManager the tag manager to get the roles of the players from
+     */
+    public void setTagManager(@NotNull TagManager tagManager) {
+        this.tagManager = tagManager;
+    }
+
+    /**
+     * @return if ProtocolLib is present, which is needed for the lag compensation and virtual projectiles
+     */
+    public boolean hasProtocolLib() {
+        return protocolLibPresent;
+    }
+
+    /**
+     * Enables or disables the lag compensation of the hits on players, which tests the hits of projectiles thrown by a
+     * player against where the player saw the other players, based on the latency of the player.
+     * <p>
+     * The lag compensation measures the latency from the keep-alive packets, so it stays disabled without ProtocolLib.
+     *
+     * @param enabled        if the hits on players should be lag compensated
+     * @param maxRewindTicks the max amount of ticks to rewind the other players
+     */
+    public void setLagCompensation(boolean enabled, int maxRewindTicks) {
+        if (lagCompensation != null) lagCompensation.disable();
+        lagCompensation = null;
+        if (!enabled || maxRewindTicks <= 0) return;
+
+        if (!protocolLibPresent) {
+            plugin.getLogger().warning(GimmeTag.PROTOCOL_LIB_NAME + " is needed for lag compensation.");
+            return;
+        }
+        lagCompensation = new LagCompensation(plugin);
+        lagCompensation.setEnabled(true, maxRewindTicks);
+    }
+
+    /**
+     * @return if the hits on players are lag compensated
+     */
+    boolean isLagCompensated() {
+        return lagCompensation != null && lagCompensation.isEnabled();
+    }
+
+    /**
+     * Returns the tick that the specified shooter sees the other players in, to rewind them to when testing the hits
+     * of the projectiles of the shooter.
+     *
+     * @param shooter the shooter of a projectile
+     * @return the tick that the shooter sees the other players in, or -1 if they should not be rewound
+     */
+    long getSeenTick(@NotNull LivingEntity shooter) {
+        if (lagCompensation == null || !(shooter instanceof Player)) return -1;
+        return lagCompensation.getSeenTick((Player) shooter, currentTick);
+    }
+
+    /**
+     * Copies the bounding box of the specified player at the specified tick, as recorded by the lag compensation, into
+     * the given array, as min x, y, z followed by max x, y, z.
+     *
+     * @param player the player to get the bounding box of
+     * @param tick   the tick to get the bounding box at
+     * @param box    the array to copy the bounding box into, starting at the given offset
+     * @param offset the index of the array to copy the bounding box to
+     * @return if the bounding box at the tick was recorded
+     */
+    boolean getRewoundBox(@NotNull Player player, long tick, @NotNull double[] box, int offset) {
+        return lagCompensation != null && lagCompensation.getBox(player, tick, box, offset);
+    }
+
+    /**
+     * Returns if the specified entity is on the same team as the specified player, from the roles of the active round
+     * of tag when there is one, or from the scoreboard teams otherwise.
+     *
+     * @param player the player to get the team from
+     * @param other  the entity to check if on the player's team
+     * @return if the other entity is on the player's team
+     */
+    boolean isSameTeam(@NotNull Player player, @NotNull Entity other) {
+        if (player == other) return true;
+
+        if (tagManager != null) {
+            Role role = tagManager.getRole(player.getEntityId());
+            if (role != null) return role == tagManager.getRole(other.getEntityId());
+        }
+
+        if (player.getUniqueId().equals(other.getUniqueId())) return true;
+        Scoreboard scoreboard = player.getScoreboard();
+        Team team1 = scoreboard.getEntryTeam(player.getName());
+        Team team2 = scoreboard.getEntryTeam(other.getName());
+        return team1 != null && team1.equals(team2);
+    }
+
+    /**
+     * Returns the live bouncy projectile that the specified entity was spawned from, or null if none.
+     *
+     * @param entity the entity to get the bouncy projectile of
+     * @return the live bouncy projectile that the entity was spawned from, or null if none
+     */
+    @Nullable
+    public BouncyProjectile getBouncyProjectile(@NotNull Entity entity) {
+        return projectilesByEntityId.get(entity.getEntityId());
+    }
+
+    /**
+     * @return a copy of all live bouncy projectiles
+     */
+    @NotNull
+    public List<BouncyProjectile> getLiveProjectiles() {
+        List<BouncyProjectile> liveProjectiles = new ArrayList<>(Arrays.asList(awakeProjectiles).subList(0, awakeProjectileCount));
+        for (List<BouncyProjectile> sleepingProjectiles : sleepingProjectilesByBlock.values()) {
+            liveProjectiles.addAll(sleepingProjectiles);
+        }
+        return liveProjectiles;
+    }
+
+    /**
+     * @return the amount of live bouncy projectiles
+     */
+    public int getLiveProjectileCount() {
+        return awakeProjectileCount + sleepingProjectileCount;
+    }
+
+    /**
+     * Returns how much of the projectile budget would be used up before the specified shooter launches another
+     * projectile.
+     *
+     * @param shooter the living entity to launch a projectile
+     * @return the fraction of the fullest cap of the budget that is used, where 1 or more means that no more
+     * projectiles can be launched
+     */
+    public double getBudgetLoad(@NotNull LivingEntity shooter) {
+        return budget.getLoad(
+                projectileCountByShooter.getOrDefault(shooter.getUniqueId(), 0),
+                projectileCountByWorld.getOrDefault(shooter.getWorld(), 0),
+                getLiveProjectileCount());
+    }
+
+    /**
+     * Degrades the specified newly launched bouncy projectile according to the budget load at its launch.
+     * <p>
+     * From the lowest load, the degradation steps are: no trail, no bounce marks, and a fuse that is cut in half and
+     * merged with the fuses of the other degraded projectiles, for them to explode in the same tick.
+     *
+     * @param bouncyProjectile the bouncy projectile to degrade
+     * @param load             the budget load at the launch of the projectile
+     */
+    public void degrade(@NotNull BouncyProjectile bouncyProjectile, double load) {
+        if (load >= NO_TRAIL_LOAD) bouncyProjectile.setTrail(false);
+        if (load >= NO_BOUNCE_MARKS_LOAD) bouncyProjectile.setBounceMarks(false);
+        if (load >= SHORT_FUSE_LOAD && !bouncyProjectile.isRemoved()) {
+            long fuseTicks = (bouncyProjectile.fuseDeadline - currentTick) / 2;
+            long fuseDeadline = (currentTick + fuseTicks) / FUSE_MERGE_TICKS * FUSE_MERGE_TICKS;
+
+            bouncyProjectile.fuseDeadline = Math.max(currentTick + 1, fuseDeadline);
+            fuseDeadlines.update(bouncyProjectile);
+        }
+    }
+
+    /**
+     * Adds the specified bouncy projectile to the live projectiles, to be updated every tick until it is removed.
+     *
+     * @param bouncyProjectile the bouncy projectile to add
+     * @param maxTicks         the max amount of ticks the projectile can live before exploding
+     */
+    void register(@NotNull BouncyProjectile bouncyProjectile, int maxTicks) {
+        addAwake(bouncyProjectile);
+
+        bouncyProjectile.fuseDeadline = currentTick + maxTicks;
+        fuseDeadlines.add(bouncyProjectile);
+
+        LivingEntity shooter = bouncyProjectile.getShooter();
+        bouncyProjectile.launchWorld = shooter.getWorld();
+        projectileCountByShooter.merge(shooter.getUniqueId(), 1, Integer::sum);
+        projectileCountByWorld.merge(bouncyProjectile.launchWorld, 1, Integer::sum);
+    }
+
+    /**
+     * Removes the specified bouncy projectile from the live projectiles, whether awake or sleeping.
+     * <p>
+     * The fuse deadline is taken out of its queue, while any wakeup is left in its queue and skipped when due, which
+     * is at most a few ticks later.
+     *
+     * @param bouncyProjectile the bouncy projectile to remove
+     */
+    void unregister(@NotNull BouncyProjectile bouncyProjectile) {
+        if (bouncyProjectile.sleeping) removeSleeping(bouncyProjectile);
+        else removeAwake(bouncyProjectile);
+        fuseDeadlines.remove(bouncyProjectile);
+
+        // Remove the counts when they reach zero, to not keep players and worlds that are gone
+        projectileCountByShooter.computeIfPresent(bouncyProjectile.getShooter().getUniqueId(),
+                (k, count) -> count > 1 ? count - 1 : null);
+        projectileCountByWorld.computeIfPresent(bouncyProjectile.launchWorld,
+                (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Wakes the specified bouncy projectile if it is sleeping, to be updated every tick again.
+     *
+     * @param bouncyProjectile the bouncy projectile to wake
+     */
+    void wake(@NotNull BouncyProjectile bouncyProjectile) {
+        if (!bouncyProjectile.sleeping) return;
+
+        removeSleeping(bouncyProjectile);
+        addAwake(bouncyProjectile);
+    }
+
+    /**
+     * Puts the specified awake bouncy projectile to sleep, until woken by a block change next to it, a hit, or its
+     * next wakeup.
+     */
+    private void sleep(@NotNull BouncyProjectile bouncyProjectile) {
+        removeAwake(bouncyProjectile);
+
+        bouncyProjectile.sleeping = true;
+        bouncyProjectile.sleepKey = blockKey(bouncyProjectile.getBlockX(), bouncyProjectile.getBlockY(), bouncyProjectile.getBlockZ());
+        sleepingProjectilesByBlock.computeIfAbsent(bouncyProjectile.sleepKey, k -> new ArrayList<>()).add(bouncyProjectile);
+        sleepingProjectileCount++;
+
+        // Woken in time to explode from being on the ground for too long
+        bouncyProjectile.wakeTick = Math.min(currentTick + SLEEP_CHECK_TICKS, bouncyProjectile.getGroundExplosionTick());
+        wakeupsByTick.computeIfAbsent(bouncyProjectile.wakeTick, k -> new ArrayList<>()).add(bouncyProjectile);
+    }
+
+    /**
+     * Adds the specified bouncy projectile to the end of the compact array of awake projectiles.
+     */
+    private void addAwake(@NotNull BouncyProjectile bouncyProjectile) {
+        if (awakeProjectileCount == awakeProjectiles.length)
+            awakeProjectiles = Arrays.copyOf(awakeProjectiles, awakeProjectiles.length * 2);
+
+        bouncyProjectile.engineSlot = awakeProjectileCount;
+        awakeProjectiles[awakeProjectileCount++] = bouncyProjectile;
+    }
+
+    /**
+     * Removes the specified bouncy projectile from the awake projectiles. The last awake projectile is moved into the
+     * freed slot to keep the array compact.
+     */
+    private void removeAwake(@NotNull BouncyProjectile bouncyProjectile) {
+        int slot = bouncyProjectile.engineSlot;
+        if (slot < 0) return;
+
+        BouncyProjectile last = awakeProjectiles[--awakeProjectileCount];
+        awakeProjectiles[slot] = last;
+        last.engineSlot = slot;
+        awakeProjectiles[awakeProjectileCount] = null;
+        bouncyProjectile.engineSlot = -1;
+    }
+
+    /**
+     * Removes the specified bouncy projectile from the sleeping projectiles.
+     */
+    private void removeSleeping(@NotNull BouncyProjectile bouncyProjectile) {
+        List<BouncyProjectile> sleepingProjectiles = sleepingProjectilesByBlock.get(bouncyProjectile.sleepKey);
+        if (sleepingProjectiles != null && sleepingProjectiles.remove(bouncyProjectile)) {
+            sleepingProjectileCount--;
+            if (sleepingProjectiles.isEmpty()) sleepingProjectilesByBlock.remove(bouncyProjectile.sleepKey);
+        }
+        bouncyProjectile.sleeping = false;
+    }
+
+    /**
+     * Main update method, run every tick.
+     * <p>
+     * Explodes the projectiles whose fuse deadlines have expired, wakes the sleeping projectiles whose wakeups are due,
+     * and then updates the awake projectiles, putting the ones that came to rest to sleep.
+     */
+    private void tick() {
+        currentTick++;
+        lineOfSightRays = 0;
+        if (lagCompensation != null) lagCompensation.record(currentTick, onlinePlayers);
+
+        BouncyProjectile expired;
+        while ((expired = fuseDeadlines.peek()) != null && expired.fuseDeadline <= currentTick) {
+            fuseDeadlines.poll();
+            if (!expired.isRemoved()) expired.explode();
+        }
+
+        List<BouncyProjectile> wakeups = wakeupsByTick.remove(currentTick);
+        if (wakeups != null) {
+            for (int i = 0; i < wakeups.size(); i++) {
+                BouncyProjectile bouncyProjectile = wakeups.get(i);
+                // Skip wakeups left from an earlier sleep
+                if (bouncyProjectile.wakeTick == currentTick) wake(bouncyProjectile);
+            }
+        }
+
+        // Iterate backwards so that a removal only moves an already updated projectile into the current slot
+        for (int i = awakeProjectileCount - 1; i >= 0; i--) {
+            if (i >= awakeProjectileCount) continue; // Several projectiles were removed by the last update
+            BouncyProjectile bouncyProjectile = awakeProjectiles[i];
+            if (bouncyProjectile.lastUpdateTick == currentTick) continue;
+
+            bouncyProjectile.lastUpdateTick = currentTick;
+            bouncyProjectile.update(currentTick);
+            if (!bouncyProjectile.isRemoved() && bouncyProjectile.canSleep()) sleep(bouncyProjectile);
+        }
+
+        runInteractions();
+        resolveExplosions();
+        bounceFeedback.flush(this);
+    }
+
+    /**
+     * Runs the interactions of the awake projectiles that interact with the other projectiles near them.
+     */
+    private void runInteractions() {
+        for (int i = 0; i < awakeProjectileCount; i++) {
+            BouncyProjectile bouncyProjectile = awakeProjectiles[i];
+            BiConsumer<BouncyProjectile, BouncyProjectile> onNearbyProjectile = bouncyProjectile.getOnNearbyProjectile();
+            if (onNearbyProjectile == null || bouncyProjectile.isRemoved()) continue;
+
+            updateGrid();
+            grid.query(bouncyProjectile.getWorld(), bouncyProjectile.getX(), bouncyProjectile.getY(),
+                    bouncyProjectile.getZ(), bouncyProjectile.getInteractionRadius(), bouncyProjectile, nearbyProjectiles);
+            for (int j = 0; j < nearbyProjectiles.size(); j++) {
+                BouncyProjectile nearbyProjectile = nearbyProjectiles.get(j);
+                if (bouncyProjectile.isRemoved()) break;
+                if (!nearbyProjectile.isRemoved()) onNearbyProjectile.accept(bouncyProjectile, nearbyProjectile);
+            }
+            nearbyProjectiles.clear();
+        }
+    }
+
+    /**
+     * Returns the live bouncy projectiles in the specified world within the specified distance from the specified
+     * location, as of their positions at the end of their last update.
+     *
+     * @param location the location to find the projectiles around
+     * @param radius   the max distance from the location
+     * @return the live bouncy projectiles within the distance from the location
+     */
+    @NotNull
+    public List<BouncyProjectile> getNearbyProjectiles(@NotNull Location location, double radius) {
+        List<BouncyProjectile> result = new ArrayList<>();
+        updateGrid();
+        grid.query(Objects.requireNonNull(location.getWorld()), location.getX(), location.getY(), location.getZ(),
+                radius, null, result);
+        return result;
+    }
+
+    /**
+     * Rebuilds the grid of the projectile positions, unless already done in this tick.
+     */
+    private void updateGrid() {
+        if (gridTick == currentTick) return;
+        gridTick = currentTick;
+
+        grid.clear(getLiveProjectileCount());
+        for (int i = 0; i < awakeProjectileCount; i++) {
+            grid.add(awakeProjectiles[i]);
+        }
+        for (List<BouncyProjectile> sleepingProjectiles : sleepingProjectilesByBlock.values()) {
+            for (BouncyProjectile bouncyProjectile : sleepingProjectiles) {
+                grid.add(bouncyProjectile);
+            }
+        }
+    }
+
+    /**
+     * Queues the explosion of the specified bouncy projectile, to be resolved at the end of the tick.
+     *
+     * @param bouncyProjectile the bouncy projectile that explodes
+     */
+    void queueExplosion(@NotNull BouncyProjectile bouncyProjectile) {
+        explosions.add(bouncyProjectile);
+    }
+
+    /**
+     * Returns if there is a line of sight from the specified position to the eyes or the center of the specified
+     * living entity, not blocked by any block collision box.
+     * <p>
+     * The amount of rays cast per tick is bounded, so that many explosions at once cannot stall the tick. Once the
+     * bound is reached, the lines of sight are assumed to be blocked for the rest of the tick, so that explosions never
+     * reach through walls. Explosions that need lines of sight are put off to the next tick before that can happen.
+     *
+     * @param world  the world of the position and the living entity
+     * @param x      the x-coordinate of the position
+     * @param y      the y-coordinate of the position
+     * @param z      the z-coordinate of the position
+     * @param entity the living entity to check the line of sight to
+     * @return if there is a line of sight to the living entity
+     */
+    boolean hasLineOfSight(@NotNull World world, double x, double y, double z, @NotNull LivingEntity entity) {
+        entity.getLocation(entityLocation);
+        double entityX = entityLocation.getX();
+        double entityZ = entityLocation.getZ();
+        BlockCollisionView view = getCollisionView(world);
+
+        return !isRayBlocked(view, x, y, z, entityX, entityLocation.getY() + entity.getEyeHeight(), entityZ)
+                || !isRayBlocked(view, x, y, z, entityX, entityLocation.getY() + entity.getHeight() / 2, entityZ);
+    }
+
+    private boolean isRayBlocked(@NotNull BlockCollisionView view, double fromX, double fromY, double fromZ,
+                                 double toX, double toY, double toZ) {
+        if (lineOfSightRays >= MAX_LINE_OF_SIGHT_RAYS) return true;
+        lineOfSightRays++;
+        return VoxelRaycast.isBlocked(view, fromX, fromY, fromZ, toX, toY, toZ, rayHit);
+    }
+
+    /**
+     * Resolves the explosions queued during the tick, all against the same snapshot of the living entities of each
+     * world, instead of every explosion querying the world for the entities around it.
+     * <p>
+     * Explosions that need lines of sight are put off to the next tick, first in line, once the rays of the tick have
+     * run out.
+     */
+    private void resolveExplosions() {
+        int deferredCount = 0;
+        // Explosion callbacks can queue more explosions, which are then resolved in the same pass
+        for (int i = 0; i < explosions.size(); i++) {
+            BouncyProjectile bouncyProjectile = explosions.get(i);
+            if (bouncyProjectile.hasExplosionLineOfSight() && lineOfSightRays >= MAX_LINE_OF_SIGHT_RAYS) {
+                explosions.set(deferredCount++, bouncyProjectile);
+                continue;
+            }
+            bouncyProjectile.resolveExplosion(getLivingEntities(bouncyProjectile.getWorld()));
+        }
+        explosions.subList(deferredCount, explosions.size()).clear();
+    }
+
+    /**
+     * Wakes the sleeping projectiles in and next to the specified block, which has changed (or might change), since
+     * they might rest on it.
+     *
+     * @param block the block that has changed
+     */
+    private void onBlockChange(@NotNull Block block) {
+        if (sleepingProjectileCount == 0) return;
+
+        for (int x = block.getX() - 1; x <= block.getX() + 1; x++) {
+            for (int y = block.getY() - 1; y <= block.getY() + 1; y++) {
+                for (int z = block.getZ() - 1; z <= block.getZ() + 1; z++) {
+                    List<BouncyProjectile> sleepingProjectiles = sleepingProjectilesByBlock.get(blockKey(x, y, z));
+                    if (sleepingProjectiles == null) continue;
+
+                    for (BouncyProjectile bouncyProjectile : new ArrayList<>(sleepingProjectiles)) {
+                        if (bouncyProjectile.getWorld().equals(block.getWorld())) wake(bouncyProjectile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Routes the events of the entity with the specified entity id to the specified bouncy projectile.
+     *
+     * @param entityId         the entity id of an entity spawned from the bouncy projectile
+     * @param bouncyProjectile the bouncy projectile to route the events to
+     */
+    void index(int entityId, @NotNull BouncyProjectile bouncyProjectile) {
+        projectilesByEntityId.put(entityId, bouncyProjectile);
+    }
+
+    /**
+     * Stops routing the events of the entity with the specified entity id.
+     *
+     * @param entityId the entity id to stop routing the events of
+     */
+    void unindex(int entityId) {
+        projectilesByEntityId.remove(entityId);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onWorldUnload(WorldUnloadEvent event) {
+        if (event.isCancelled()) return;
+
+        livingEntitiesByWorld.remove(event.getWorld());
+        bounceFeedback.clear(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPlayerJoin(PlayerJoinEvent event) {
+        onlinePlayers.add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPlayerQuit(PlayerQuitEvent event) {
+        onlinePlayers.remove(event.getPlayer());
+    }
+
+    /**
+     * Adds spawned living entities to the living entities kept for their world.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onEntitySpawn(EntitySpawnEvent event) {
+        if (event.isCancelled()) return;
+        if (!(event.getEntity() instanceof LivingEntity)) return;
+
+        LivingEntitySnapshot snapshot = livingEntitiesByWorld.get(event.getEntity().getWorld());
+        if (snapshot != null) snapshot.add((LivingEntity) event.getEntity());
+    }
+
+    /**
+     * Makes the living entities of the world of a loaded chunk be gathered again, to include the ones loaded with it.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onChunkLoad(ChunkLoadEvent event) {
+        LivingEntitySnapshot snapshot = livingEntitiesByWorld.get(event.getWorld());
+        if (snapshot != null) snapshot.invalidate();
+    }
+
+    /**
+     * Handles the event of a bouncy projectile hitting a surface (like a block or an entity).
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onProjectileHit(ProjectileHitEvent event) {
+        BouncyProjectile bouncyProjectile = getBouncyProjectile(event.getEntity());
+        if (bouncyProjectile == null) return;
+
+        wake(bouncyProjectile);
+        bouncyProjectile.onHit(event);
+    }
+
+    /**
+     * Takes away the experience and the splash effect of bouncy projectiles thrown as experience bottles, which are
+     * only used for their built-in gravity.
+     */
+    @EventHandler(priority = EventPriority.LOW)
+    private void onExpBottle(ExpBottleEvent event) {
+        if (getBouncyProjectile(event.getEntity()) == null) return;
+
+        event.setExperience(0);
+        event.setShowEffect(false);
+    }
+
+    /**
+     * Handles the event of a bouncy projectile damaging an entity it hit directly, even if cancelled, for the
+     * projectile to be consumed by the hit either way.
+     */
+    @EventHandler(priority = EventPriority.LOW)
+    private void onDirectHitDamage(EntityDamageByEntityEvent event) {
+        BouncyProjectile bouncyProjectile = getBouncyProjectile(event.getDamager());
+        if (bouncyProjectile == null) return;
+
+        bouncyProjectile.onDirectHitDamage(event);
+    }
+
+    static long blockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+}
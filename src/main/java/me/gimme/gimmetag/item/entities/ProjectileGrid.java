@@ -0,0 +1,135 @@
+package me.gimme.gimmetag.item.entities;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A uniform grid of the positions of the live bouncy projectiles, rebuilt from their primitive positions, to find the
+ * projectiles near a point without testing every pair of projectiles.
+ * <p>
+ * The projectiles of each cell are kept as linked lists of indices, with the heads in an open addressing hash table
+ * keyed by the cell. All arrays are reused between rebuilds, so that a rebuild only allocates when the amount of
+ * projectiles grows.
+ */
+class ProjectileGrid {
+
+    private static final double CELL_SIZE = 4; // Size of the cells, about the size of the interactions
+    private static final int INITIAL_CAPACITY = 64;
+
+    private BouncyProjectile[] projectiles = new BouncyProjectile[INITIAL_CAPACITY];
+    private double[] positions = new double[INITIAL_CAPACITY * 3];
+    private int[] next = new int[INITIAL_CAPACITY]; // Index of the next projectile in the same cell, or -1
+    private int count;
+
+    private long[] cellKeys = new long[INITIAL_CAPACITY * 2];
+    private int[] cellHeads = new int[INITIAL_CAPACITY * 2]; // Index of the first projectile in the cell, or -1 if free
+
+    /**
+     * Clears the grid, to be rebuilt with the specified amount of projectiles.
+     *
+     * @param expectedCount the amount of projectiles that will be added
+     */
+    void clear(int expectedCount) {
+        Arrays.fill(projectiles, 0, count, null);
+        count = 0;
+
+        if (expectedCount > projectiles.length) {
+            int capacity = Math.max(projectiles.length * 2, expectedCount);
+            projectiles = new BouncyProjectile[capacity];
+            positions = new double[capacity * 3];
+            next = new int[capacity];
+        }
+
+        // Keep the hash table at most half full
+        int tableSize = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, expectedCount) * 2 - 1) << 1;
+        if (tableSize != cellHeads.length) {
+            cellKeys = new long[tableSize];
+            cellHeads = new int[tableSize];
+        }
+        Arrays.fill(cellHeads, -1);
+    }
+
+    /**
+     * Adds the specified projectile at its current position. The grid must have been cleared with room for it.
+     *
+     * @param projectile the projectile to add
+     */
+    void add(@NotNull BouncyProjectile projectile) {
+        int i = count++;
+        double x = projectile.getX();
+        double y = projectile.getY();
+        double z = projectile.getZ();
+
+        projectiles[i] = projectile;
+        positions[i * 3] = x;
+        positions[i * 3 + 1] = y;
+        positions[i * 3 + 2] = z;
+
+        int slot = findSlot(ProjectileEngine.blockKey(toCell(x), toCell(y), toCell(z)));
+        next[i] = cellHeads[slot];
+        cellHeads[slot] = i;
+    }
+
+    /**
+     * Adds the projectiles in the specified world within the specified distance from the specified position, as of
+     * the last rebuild, to the given collection.
+     *
+     * @param world    the world of the position
+     * @param x        the x-coordinate of the position
+     * @param y        the y-coordinate of the position
+     * @param z        the z-coordinate of the position
+     * @param radius   the max distance from the position
+     * @param excluded a projectile to leave out, or null
+     * @param result   the collection to add the projectiles to
+     */
+    void query(@NotNull World world, double x, double y, double z, double radius, @Nullable BouncyProjectile excluded,
+               @NotNull Collection<? super BouncyProjectile> result) {
+        if (count == 0) return;
+        double radiusSquared = radius * radius;
+
+        int maxCellX = toCell(x + radius);
+        int maxCellY = toCell(y + radius);
+        int maxCellZ = toCell(z + radius);
+        for (int cellX = toCell(x - radius); cellX <= maxCellX; cellX++) {
+            for (int cellY = toCell(y - radius); cellY <= maxCellY; cellY++) {
+                for (int cellZ = toCell(z - radius); cellZ <= maxCellZ; cellZ++) {
+                    int slot = findSlot(ProjectileEngine.blockKey(cellX, cellY, cellZ));
+
+                    for (int i = cellHeads[slot]; i >= 0; i = next[i]) {
+                        BouncyProjectile projectile = projectiles[i];
+                        if (projectile == excluded || projectile.isRemoved()) continue;
+
+                        double dx = positions[i * 3] - x;
+                        double dy = positions[i * 3 + 1] - y;
+                        double dz = positions[i * 3 + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz > radiusSquared) continue;
+                        if (!world.equals(projectile.getWorld())) continue;
+
+                        result.add(projectile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the hash table of the cell with the specified key, or the free slot where it would be.
+     */
+    private int findSlot(long cellKey) {
+        int mask = cellHeads.length - 1;
+        int slot = (int) (cellKey ^ (cellKey >>> 32)) * 0x9E3779B9 & mask;
+        while (cellHeads[slot] >= 0 && cellKeys[slot] != cellKey) {
+            slot = (slot + 1) & mask;
+        }
+        cellKeys[slot] = cellKey;
+        return slot;
+    }
+
+    private static int toCell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+}
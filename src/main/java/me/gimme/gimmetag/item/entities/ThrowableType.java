@@ -0,0 +1,82 @@
+package me.gimme.gimmetag.item.entities;
+
+import org.bukkit.entity.Projectile;
+import org.bukkit.entity.Snowball;
+import org.bukkit.entity.ThrowableProjectile;
+import org.bukkit.entity.ThrownExpBottle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The vanilla throwable projectile types that a bouncy projectile can be thrown as, with their built-in gravity.
+ * <p>
+ * Throwing the type whose built-in gravity is the closest to the wanted gravity lets the clients predict the motion on
+ * their own, so that only the remainder of the gravity (if any) has to be applied manually, which costs a velocity
+ * update every tick. The built-in gravity of any type can also be turned off, for a gravity of 0.
+ * <p>
+ * All types have the same drag in the air. Types with side effects on hit (like eggs hatching chickens and ender
+ * pearls teleporting the thrower) are left out, except for experience bottles, whose experience is taken away by the
+ * {@link ProjectileEngine}.
+ */
+enum ThrowableType {
+    SNOWBALL(Snowball.class, 0.028), // ~0.028 is the standard gravity for a snowball
+    EXP_BOTTLE(ThrownExpBottle.class, 0.07);
+
+    private final Class<? extends ThrowableProjectile> projectileClass;
+    private final double gravity;
+
+    ThrowableType(@NotNull Class<? extends ThrowableProjectile> projectileClass, double gravity) {
+        this.projectileClass = projectileClass;
+        this.gravity = gravity;
+    }
+
+    /**
+     * @return the class of the projectile entity of this type
+     */
+    @NotNull
+    Class<? extends ThrowableProjectile> getProjectileClass() {
+        return projectileClass;
+    }
+
+    /**
+     * @return the built-in gravity of this type
+     */
+    double getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Returns the type with the built-in gravity closest to the specified gravity, or the standard type if the
+     * gravity is closer to 0, since the built-in gravity will then be turned off.
+     *
+     * @param gravity the wanted gravity
+     * @return the type with the built-in gravity closest to the gravity
+     */
+    @NotNull
+    static ThrowableType closestTo(double gravity) {
+        ThrowableType closest = SNOWBALL;
+        double closestDifference = Math.abs(gravity);
+        for (ThrowableType type : values()) {
+            double difference = Math.abs(gravity - type.gravity);
+            if (difference < closestDifference) {
+                closest = type;
+                closestDifference = difference;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Returns the type of the specified projectile class, or null if it is not one of the types.
+     *
+     * @param projectileClass the class of a projectile entity
+     * @return the type of the projectile class, or null if none
+     */
+    @Nullable
+    static ThrowableType of(@NotNull Class<? extends Projectile> projectileClass) {
+        for (ThrowableType type : values()) {
+            if (type.projectileClass.isAssignableFrom(projectileClass)) return type;
+        }
+        return null;
+    }
+}
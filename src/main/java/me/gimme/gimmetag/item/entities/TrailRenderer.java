@@ -0,0 +1,73 @@
+package me.gimme.gimmetag.item.entities;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Sends the trail particles of the projectiles to the players that can see them.
+ * <p>
+ * Trail particles are only sent to players within the view distance of the trails, and that have the chunk of the
+ * particle within the view distance of the server. Players further away than the full rate distance are only sent
+ * every few trail particles, since the trail is too small to make out from afar anyway.
+ */
+class TrailRenderer {
+
+    private static final int FAR_TRAIL_INTERVAL_TICKS = 4; // Ticks between trail particles sent to far away players
+
+    private final Location playerLocation = new Location(null, 0, 0, 0);
+    private double viewDistanceSquared = 48 * 48;
+    private double fullRateDistanceSquared = 16 * 16;
+
+    /**
+     * Sets the distances within which players are sent the trail particles.
+     *
+     * @param viewDistance     the max distance for players to be sent the trail particles
+     * @param fullRateDistance the max distance for players to be sent every trail particle
+     */
+    void setDistances(double viewDistance, double fullRateDistance) {
+        this.viewDistanceSquared = viewDistance * viewDistance;
+        this.fullRateDistanceSquared = fullRateDistance * fullRateDistance;
+    }
+
+    /**
+     * Sends a trail particle at the specified position to the players that can see it.
+     *
+     * @param players  the players of the world of the particle
+     * @param particle the trail particle to send
+     * @param x        the x-coordinate of the particle
+     * @param y        the y-coordinate of the particle
+     * @param z        the z-coordinate of the particle
+     * @param tick     the current engine tick
+     */
+    void spawn(@NotNull List<Player> players, @NotNull Particle particle, double x, double y, double z, long tick) {
+        if (players.isEmpty()) return;
+
+        boolean farTick = tick % FAR_TRAIL_INTERVAL_TICKS == 0;
+        int chunkX = Location.locToBlock(x) >> 4;
+        int chunkZ = Location.locToBlock(z) >> 4;
+        int chunkViewDistance = Bukkit.getViewDistance();
+
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            player.getLocation(playerLocation);
+
+            double dx = playerLocation.getX() - x;
+            double dy = playerLocation.getY() - y;
+            double dz = playerLocation.getZ() - z;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared > viewDistanceSquared) continue;
+            if (distanceSquared > fullRateDistanceSquared && !farTick) continue;
+
+            // Skip players that do not have the chunk of the particle loaded
+            if (Math.abs((playerLocation.getBlockX() >> 4) - chunkX) > chunkViewDistance
+                    || Math.abs((playerLocation.getBlockZ() >> 4) - chunkZ) > chunkViewDistance) continue;
+
+            player.spawnParticle(particle, x, y, z, 1, 0, 0, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package me.gimme.gimmetag.item.entities;
+
+import me.gimme.gimmetag.item.entities.collision.BlockCollisionView;
+import me.gimme.gimmetag.item.entities.collision.SweptSphere;
+import org.bukkit.Bukkit;
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Shows the players that aim with a bouncy projectile the predicted path of a throw, up to the first few bounces, as
+ * particles that only they can see.
+ * <p>
+ * The path is simulated off the main thread against the collision view of the world, with the same physics as a
+ * virtual bouncy projectile, but without hitting any entities. A path is only simulated again when the aim has
+ * changed noticeably since the last one, and never while the last one is still being simulated, so the main thread
+ * only takes a snapshot of the aim and sends the particles of the last path.
+ * <p>
+ * Off the main thread, the collision view cannot look up blocks that are not built or not resolved yet, so the path is
+ * cut off before the first tick that sweeps past any such block. The unresolved blocks of built chunks are then
+ * resolved on the main thread, and the path is simulated again, while the path stays hidden past blocks of chunks that
+ * are not built.
+ */
+public class TrajectoryPreview {
+
+    private static final int PERIOD_TICKS = 4;                          // Ticks between each update of the previews
+    private static final int SIMULATED_TICKS = 80;                      // Max ticks of flight to simulate
+    private static final int MAX_BOUNCES = 3;                           // Max bounces to simulate
+    private static final int POINT_INTERVAL_TICKS = 4;                  // Ticks of flight between each point of a path
+    private static final double MAX_POSITION_CHANGE = 0.1;              // Max eye movement to keep the last path
+    private static final double MIN_DIRECTION_DOT = Math.cos(Math.toRadians(1)); // Max aim rotation to keep the last path
+    private static final double MAX_VELOCITY_CHANGE = 0.02;             // Max velocity change to keep the last path
+    private static final int MAX_UNKNOWN_BLOCKS = 16;                   // Max unknown blocks to resolve per path
+    private static final Particle.DustOptions PATH_DUST = new Particle.DustOptions(Color.WHITE, 0.5f);
+    private static final Particle.DustOptions BOUNCE_DUST = new Particle.DustOptions(Color.WHITE, 1f);
+
+    private final ProjectileEngine engine;
+    private final double speed;
+    private final double gravity;
+    private final double restitutionFactor;
+    private final double frictionFactor;
+    private final boolean sticky;
+    private final Map<UUID, Aim> aimsByPlayer = new HashMap<>();
+
+    @Nullable
+    private BukkitTask task;
+
+    /**
+     * Creates a new trajectory preview of bouncy projectiles thrown with the specified physics.
+     *
+     * @param engine            the engine to get the collision views from
+     * @param speed             the initial speed of the thrown projectiles
+     * @param gravity           the gravity of the projectiles
+     * @param restitutionFactor the restitution factor of the bounces
+     * @param frictionFactor    the friction factor of the bounces
+     * @param sticky            if the projectiles stick to the first surface they hit
+     */
+    public TrajectoryPreview(@NotNull ProjectileEngine engine, double speed, double gravity, double restitutionFactor,
+                             double frictionFactor, boolean sticky) {
+        this.engine = engine;
+        this.speed = speed;
+        this.gravity = gravity;
+        this.restitutionFactor = restitutionFactor;
+        this.frictionFactor = frictionFactor;
+        this.sticky = sticky;
+    }
+
+    /**
+     * Starts showing the preview to the players that are aiming, until stopped.
+     *
+     * @param isAiming the test of if a player is aiming, and should be shown the preview
+     */
+    public void start(@NotNull Predicate<@NotNull Player> isAiming) {
+        stop();
+
+        task = new BukkitRunnable() {
+            private long tick;
+
+            @Override
+            public void run() {
+                tick++;
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    if (!isAiming.test(player)) continue;
+
+                    Aim aim = aimsByPlayer.computeIfAbsent(player.getUniqueId(), k -> new Aim());
+                    aim.lastSeenTick = tick;
+                    update(player, aim);
+                }
+                // Forget the players that stopped aiming or left
+                aimsByPlayer.values().removeIf(aim -> aim.lastSeenTick != tick);
+            }
+        }.runTaskTimer(engine.getPlugin(), 0, PERIOD_TICKS);
+    }
+
+    /**
+     * Stops showing the preview.
+     */
+    public void stop() {
+        if (task != null) task.cancel();
+        task = null;
+        aimsByPlayer.clear();
+    }
+
+    /**
+     * Simulates the path again if the aim of the specified player has changed since the last path, and shows the last
+     * path to the player.
+     *
+     * @param player the player that is aiming
+     * @param aim    the last aim of the player
+     */
+    private void update(@NotNull Player player, @NotNull Aim aim) {
+        // Same spawn location and velocity as a thrown bouncy projectile
+        Location location = player.getEyeLocation().subtract(0, 0.1, 0);
+        Vector velocity = BouncyProjectile.getThrowVelocity(player, location).multiply(speed);
+        World world = player.getWorld();
+        BlockCollisionView view = engine.getCollisionView(world);
+
+        if (!aim.simulating && aim.unknownBlocks != null) resolveUnknownBlocks(view, aim);
+
+        if (!aim.simulating && aim.hasChanged(world, location, velocity)) {
+            aim.set(world, location, velocity);
+            aim.simulating = true;
+
+            double x = location.getX(), y = location.getY(), z = location.getZ();
+            double vx = velocity.getX(), vy = velocity.getY(), vz = velocity.getZ();
+
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    KnownBlocksView knownView = new KnownBlocksView(view);
+                    aim.path = simulate(knownView, x, y, z, vx, vy, vz);
+                    aim.unknownBlocks = knownView.getUnknownBlocks();
+                    aim.simulating = false;
+                }
+            }.runTaskAsynchronously(engine.getPlugin());
+        }
+
+        double[] path = aim.path;
+        if (path == null) return;
+
+        for (int i = 0; i < path.length; i += 4) {
+            player.spawnParticle(Particle.REDSTONE, path[i], path[i + 1], path[i + 2], 1, 0, 0, 0, 0,
+                    path[i + 3] != 0 ? BOUNCE_DUST : PATH_DUST);
+        }
+    }
+
+    /**
+     * Resolves the unknown blocks that the last path of the specified aim was cut off at, by querying them on the main
+     * thread, and makes the path be simulated again if any of them got known.
+     *
+     * @param view the collision view of the world of the aim
+     * @param aim  the aim with unknown blocks
+     */
+    private static void resolveUnknownBlocks(@NotNull BlockCollisionView view, @NotNull Aim aim) {
+        int[] unknownBlocks = Objects.requireNonNull(aim.unknownBlocks);
+        aim.unknownBlocks = null;
+
+        for (int i = 0; i < unknownBlocks.length; i += 3) {
+            int x = unknownBlocks[i], y = unknownBlocks[i + 1], z = unknownBlocks[i + 2];
+            view.getCollisionBoxes(x, y, z);
+            if (view.isKnown(x, y, z)) aim.resimulate = true;
+        }
+    }
+
+    /**
+     * Simulates the path of a projectile thrown from the specified position with the specified velocity, until it
+     * gets grounded, after the max amount of bounces, or after the max amount of ticks, or until it sweeps past a
+     * block that is not known by the view.
+     * <p>
+     * This only reads the given view, so it can be done off the main thread.
+     *
+     * @param view the view of the block collision shapes to simulate against
+     * @param x    the start x-coordinate of the projectile
+     * @param y    the start y-coordinate of the projectile
+     * @param z    the start z-coordinate of the projectile
+     * @param vx   the initial velocity along the x-axis
+     * @param vy   the initial velocity along the y-axis
+     * @param vz   the initial velocity along the z-axis
+     * @return the points of the path, as the coordinates of each point followed by 1 if the point is a bounce and 0
+     * otherwise
+     */
+    @NotNull
+    private double[] simulate(@NotNull KnownBlocksView view, double x, double y, double z,
+                              double vx, double vy, double vz) {
+        double[] points = new double[(SIMULATED_TICKS / POINT_INTERVAL_TICKS + MAX_BOUNCES + 2) * 4];
+        int count = 0;
+        SweptSphere.Hit hit = new SweptSphere.Hit();
+        int bounces = 0;
+
+        simulation:
+        for (int tick = 1; tick <= SIMULATED_TICKS; tick++) {
+            double remaining = 1; // Fraction of the tick left to move
+            for (int i = 0; i < BouncyProjectile.MAX_COLLISIONS_PER_TICK && remaining > 0; i++) {
+                double dx = vx * remaining;
+                double dy = vy * remaining;
+                double dz = vz * remaining;
+                boolean hitBlock = SweptSphere.sweep(view, x, y, z, dx, dy, dz, BouncyProjectile.RADIUS, hit);
+                if (view.hasUnknownBlocks()) break simulation;
+                if (!hitBlock) {
+                    x += dx;
+                    y += dy;
+                    z += dz;
+                    break;
+                }
+
+                double fraction = hit.getFraction();
+                x += dx * fraction + hit.getNormalX() * BouncyProjectile.CONTACT_SEPARATION;
+                y += dy * fraction + hit.getNormalY() * BouncyProjectile.CONTACT_SEPARATION;
+                z += dz * fraction + hit.getNormalZ() * BouncyProjectile.CONTACT_SEPARATION;
+                count = addPoint(points, count, x, y, z, true);
+
+                // Stop where the projectile would get grounded, as it does not move much further from there
+                boolean groundBounce = (gravity > 0 && hit.getNormalY() > 0) || (gravity < 0 && hit.getNormalY() < 0);
+                if (sticky || (groundBounce && Math.abs(vy) <= BouncyProjectile.Y_VELOCITY_CONSIDERED_GROUNDED)
+                        || ++bounces > MAX_BOUNCES) break simulation;
+
+                vx = bounceComponent(vx, hit.getNormalX());
+                vy = bounceComponent(vy, hit.getNormalY());
+                vz = bounceComponent(vz, hit.getNormalZ());
+                remaining *= 1 - fraction;
+            }
+
+            vx *= BouncyProjectile.DRAG_FACTOR;
+            vy = vy * BouncyProjectile.DRAG_FACTOR - gravity;
+            vz *= BouncyProjectile.DRAG_FACTOR;
+
+            if (tick % POINT_INTERVAL_TICKS == 0) count = addPoint(points, count, x, y, z, false);
+        }
+
+        double[] path = new double[count];
+        System.arraycopy(points, 0, path, 0, count);
+        return path;
+    }
+
+    /**
+     * Returns the specified velocity component after a bounce, the same way as a bouncy projectile would bounce.
+     */
+    private double bounceComponent(double velocity, int normal) {
+        if (normal != 0) return Math.abs(velocity) * normal * restitutionFactor;
+        return velocity * frictionFactor;
+    }
+
+    private static int addPoint(@NotNull double[] points, int count, double x, double y, double z, boolean bounce) {
+        if (count == points.length) return count;
+        points[count] = x;
+        points[count + 1] = y;
+        points[count + 2] = z;
+        points[count + 3] = bounce ? 1 : 0;
+        return count + 4;
+    }
+
+
+    /**
+     * The aim of a player that the last path was simulated from, and the last path.
+     */
+    private static class Aim {
+        private World world;
+        private double x, y, z;
+        private double directionX, directionY, directionZ;
+        private double velocityX, velocityY, velocityZ;
+        private long lastSeenTick;
+        private boolean resimulate; // If the path should be simulated again, since unknown blocks have been resolved
+
+        private volatile boolean simulating;
+        @Nullable
+        private volatile double[] path;
+        @Nullable
+        private volatile int[] unknownBlocks; // Coordinates of the unknown blocks that the last path was cut off at
+
+        private boolean hasChanged(@NotNull World world, @NotNull Location location, @NotNull Vector velocity) {
+            if (world != this.world || resimulate) return true;
+
+            Vector direction = location.getDirection();
+            double dx = location.getX() - x, dy = location.getY() - y, dz = location.getZ() - z;
+            double dvx = velocity.getX() - velocityX, dvy = velocity.getY() - velocityY, dvz = velocity.getZ() - velocityZ;
+
+            return dx * dx + dy * dy + dz * dz > MAX_POSITION_CHANGE * MAX_POSITION_CHANGE
+                    || direction.getX() * directionX + direction.getY() * directionY + direction.getZ() * directionZ < MIN_DIRECTION_DOT
+                    || dvx * dvx + dvy * dvy + dvz * dvz > MAX_VELOCITY_CHANGE * MAX_VELOCITY_CHANGE;
+        }
+
+        private void set(@NotNull World world, @NotNull Location location, @NotNull Vector velocity) {
+            Vector direction = location.getDirection();
+            if (world != this.world) path = null;
+            this.resimulate = false;
+            this.world = world;
+            this.x = location.getX();
+            this.y = location.getY();
+            this.z = location.getZ();
+            this.directionX = direction.getX();
+            this.directionY = direction.getY();
+            this.directionZ = direction.getZ();
+            this.velocityX = velocity.getX();
+            this.velocityY = velocity.getY();
+            this.velocityZ = velocity.getZ();
+        }
+    }
+
+
+    /**
+     * A collision view that records the blocks that are queried but not known by the wrapped view, off the main thread.
+     */
+    private static class KnownBlocksView implements BlockCollisionView {
+        private final BlockCollisionView view;
+        private final int[] unknownBlocks = new int[MAX_UNKNOWN_BLOCKS * 3];
+        private int unknownCount;
+
+        private KnownBlocksView(@NotNull BlockCollisionView view) {
+            this.view = view;
+        }
+
+        @Override
+        @NotNull
+        public double[] getCollisionBoxes(int x, int y, int z) {
+            if (!view.isKnown(x, y, z) && unknownCount < MAX_UNKNOWN_BLOCKS) {
+                unknownBlocks[unknownCount * 3] = x;
+                unknownBlocks[unknownCount * 3 + 1] = y;
+                unknownBlocks[unknownCount * 3 + 2] = z;
+                unknownCount++;
+            }
+            return view.getCollisionBoxes(x, y, z);
+        }
+
+        @Override
+        public boolean isKnown(int x, int y, int z) {
+            return view.isKnown(x, y, z);
+        }
+
+        private boolean hasUnknownBlocks() {
+            return unknownCount > 0;
+        }
+
+        /**
+         * @return the coordinates of the recorded unknown blocks, or null if none
+         */
+        @Nullable
+        private int[] getUnknownBlocks() {
+            return unknownCount > 0 ? Arrays.copyOf(unknownBlocks, unknownCount * 3) : null;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package me.gimme.gimmetag.item.entities;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.utility.MinecraftReflection;
+import com.comphenix.protocol.wrappers.WrappedDataWatcher;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A throwable item entity that only exists on the clients, spawned and moved with packets.
+ * <p>
+ * The server never sees the entity, so it is never ticked, collision checked or added to any chunk's entity list. It
+ * is only shown to the players within tracking range, which get sent relative move packets as it is moved.
+ * <p>
+ * While it has a velocity, the viewers predict its movement on their own instead, the same way as they would for a
+ * snowball without gravity, and are only sent its exact position when the velocity is set back to zero.
+ */
+class VirtualEntity {
+
+    private static final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+    // Counts down from the top to never collide with the entity ids given out by the server, which count up from 0
+    private static final AtomicInteger nextEntityId = new AtomicInteger(Integer.MAX_VALUE);
+    private static final double TRACKING_RANGE = 64;
+    private static final double MAX_RELATIVE_MOVE = 8; // Max distance in any axis that fits in a relative move packet
+    private static final double MAX_VELOCITY = 3.9; // Max velocity in any axis that fits in a velocity packet
+    private static final int FLAGS_INDEX = 0;
+    private static final int NO_GRAVITY_INDEX = 5;
+    private static final int ITEM_INDEX = 7;
+
+    private final int entityId = nextEntityId.getAndDecrement();
+    private final UUID uuid = UUID.randomUUID();
+    private final World world;
+    private final ItemStack item;
+    private final List<Player> viewers = new ArrayList<>();
+    private final Set<UUID> viewerIds = new HashSet<>(); // Unique ids of the viewers, to look them up without a scan
+    private final Location playerLocation = new Location(null, 0, 0, 0); // Reused to read the locations of players
+
+    // Last position sent to the viewers, or the current position if predicted by the viewers
+    private double x;
+    private double y;
+    private double z;
+
+    // Last velocity sent to the viewers
+    private double velocityX;
+    private double velocityY;
+    private double velocityZ;
+
+    VirtualEntity(@NotNull Location location, @Nullable ItemStack item) {
+        this.world = Objects.requireNonNull(location.getWorld());
+        this.item = item != null ? item : new ItemStack(Material.SNOWBALL);
+        this.x = location.getX();
+        this.y = location.getY();
+        this.z = location.getZ();
+    }
+
+    /**
+     * @return the entity id of this entity on the clients
+     */
+    int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * @return the unique id of this entity on the clients
+     */
+    @NotNull
+    UUID getUniqueId() {
+        return uuid;
+    }
+
+    /**
+     * Moves this entity to the specified position, spawning it for players that came within tracking range and
+     * destroying it for players that left it.
+     *
+     * @param newX    the new x-coordinate
+     * @param newY    the new y-coordinate
+     * @param newZ    the new z-coordinate
+     * @param players the players in the world of this entity, to spawn it for if within tracking range
+     */
+    void move(double newX, double newY, double newZ, @NotNull List<Player> players) {
+        if (isPredicted()) {
+            x = newX;
+            y = newY;
+            z = newZ;
+            updateViewers(null, players);
+            return;
+        }
+
+        double dx = newX - x;
+        double dy = newY - y;
+        double dz = newZ - z;
+
+        PacketContainer movePacket = null;
+        if (Math.abs(dx) < MAX_RELATIVE_MOVE && Math.abs(dy) < MAX_RELATIVE_MOVE && Math.abs(dz) < MAX_RELATIVE_MOVE) {
+            // Relative moves are in fixed-point units of 1/4096 of a block, so only the sent amount is added to the
+            // position to not let rounding errors accumulate on the clients
+            short sx = (short) Math.round(dx * 4096);
+            short sy = (short) Math.round(dy * 4096);
+            short sz = (short) Math.round(dz * 4096);
+            x += sx / 4096d;
+            y += sy / 4096d;
+            z += sz / 4096d;
+
+            if (sx != 0 || sy != 0 || sz != 0) {
+                movePacket = protocolManager.createPacket(PacketType.Play.Server.REL_ENTITY_MOVE);
+                movePacket.getIntegers().write(0, entityId);
+                movePacket.getShorts().write(0, sx).write(1, sy).write(2, sz);
+                movePacket.getBooleans().write(0, false);
+            }
+        } else {
+            x = newX;
+            y = newY;
+            z = newZ;
+
+            movePacket = createTeleportPacket();
+        }
+
+        updateViewers(movePacket, players);
+    }
+
+    /**
+     * Sets the velocity of this entity, for the viewers to predict its movement from, or stops the prediction and sends
+     * the exact position if zero.
+     *
+     * @param velocityX the x-component of the velocity
+     * @param velocityY the y-component of the velocity
+     * @param velocityZ the z-component of the velocity
+     */
+    void setVelocity(double velocityX, double velocityY, double velocityZ) {
+        boolean wasPredicted = isPredicted();
+        if (!wasPredicted && velocityX == 0 && velocityY == 0 && velocityZ == 0) return;
+
+        this.velocityX = velocityX;
+        this.velocityY = velocityY;
+        this.velocityZ = velocityZ;
+
+        PacketContainer velocityPacket = createVelocityPacket();
+        PacketContainer teleportPacket = wasPredicted && !isPredicted() ? createTeleportPacket() : null;
+        for (int i = 0; i < viewers.size(); i++) {
+            Player player = viewers.get(i);
+            if (teleportPacket != null) send(player, teleportPacket);
+            send(player, velocityPacket);
+        }
+    }
+
+    /**
+     * @return if the viewers predict the movement of this entity from its velocity
+     */
+    private boolean isPredicted() {
+        return velocityX != 0 || velocityY != 0 || velocityZ != 0;
+    }
+
+    /**
+     * Sends the specified move packet, if any, to the viewers within tracking range, destroying this entity for the
+     * viewers that left it and spawning it for the players that came within it.
+     */
+    private void updateViewers(@Nullable PacketContainer movePacket, @NotNull List<Player> players) {
+        for (int i = viewers.size() - 1; i >= 0; i--) {
+            Player player = viewers.get(i);
+            if (player.isOnline() && isInRange(player)) continue;
+            if (player.isOnline()) send(player, createDestroyPacket());
+            viewers.remove(i);
+            viewerIds.remove(player.getUniqueId());
+        }
+        if (movePacket != null) {
+            for (int i = 0; i < viewers.size(); i++) {
+                send(viewers.get(i), movePacket);
+            }
+        }
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            if (!viewerIds.contains(player.getUniqueId()) && isInRange(player)) spawn(player);
+        }
+    }
+
+    /**
+     * Resends the metadata of this entity to all viewers, letting packet listeners (such as outline effects) modify it
+     * again.
+     */
+    void refreshMetadata() {
+        for (Player player : viewers) {
+            send(player, createMetadataPacket());
+        }
+    }
+
+    /**
+     * Resends the metadata of this entity to the specified player, if it is a viewer, letting packet listeners (such
+     * as outline effects) modify it again.
+     *
+     * @param player the player to resend the metadata to
+     */
+    void refreshMetadata(@NotNull Player player) {
+        if (viewerIds.contains(player.getUniqueId())) send(player, createMetadataPacket());
+    }
+
+    /**
+     * Destroys this entity for all viewers.
+     */
+    void remove() {
+        PacketContainer destroyPacket = createDestroyPacket();
+        for (Player player : viewers) {
+            if (player.isOnline()) send(player, destroyPacket);
+        }
+        viewers.clear();
+        viewerIds.clear();
+    }
+
+    /**
+     * Spawns this entity for the specified player.
+     *
+     * @param player the player to spawn this entity for
+     */
+    private void spawn(@NotNull Player player) {
+        viewers.add(player);
+        viewerIds.add(player.getUniqueId());
+
+        PacketContainer spawnPacket = protocolManager.createPacket(PacketType.Play.Server.SPAWN_ENTITY);
+        spawnPacket.getIntegers().write(0, entityId);
+        spawnPacket.getUUIDs().write(0, uuid);
+        spawnPacket.getEntityTypeModifier().write(0, EntityType.SNOWBALL);
+        spawnPacket.getDoubles().write(0, x).write(1, y).write(2, z);
+
+        send(player, spawnPacket);
+        send(player, createMetadataPacket());
+        if (isPredicted()) send(player, createVelocityPacket());
+    }
+
+    @NotNull
+    private PacketContainer createTeleportPacket() {
+        PacketContainer teleportPacket = protocolManager.createPacket(PacketType.Play.Server.ENTITY_TELEPORT);
+        teleportPacket.getIntegers().write(0, entityId);
+        teleportPacket.getDoubles().write(0, x).write(1, y).write(2, z);
+        teleportPacket.getBooleans().write(0, false);
+        return teleportPacket;
+    }
+
+    /**
+     * @return a velocity packet with the velocity of this entity, in units of 1/8000 of a block per tick
+     */
+    @NotNull
+    private PacketContainer createVelocityPacket() {
+        PacketContainer velocityPacket = protocolManager.createPacket(PacketType.Play.Server.ENTITY_VELOCITY);
+        velocityPacket.getIntegers()
+                .write(0, entityId)
+                .write(1, toVelocityUnits(velocityX))
+                .write(2, toVelocityUnits(velocityY))
+                .write(3, toVelocityUnits(velocityZ));
+        return velocityPacket;
+    }
+
+    private static int toVelocityUnits(double velocity) {
+        return (int) (Math.max(-MAX_VELOCITY, Math.min(MAX_VELOCITY, velocity)) * 8000);
+    }
+
+    @NotNull
+    private PacketContainer createDestroyPacket() {
+        PacketContainer destroyPacket = protocolManager.createPacket(PacketType.Play.Server.ENTITY_DESTROY);
+        destroyPacket.getIntegerArrays().write(0, new int[]{entityId});
+        return destroyPacket;
+    }
+
+    /**
+     * Creates a new metadata packet for every send, since packet listeners are allowed to modify it.
+     *
+     * @return a metadata packet with the flags, gravity and displayed item of this entity
+     */
+    @NotNull
+    private PacketContainer createMetadataPacket() {
+        WrappedDataWatcher dataWatcher = new WrappedDataWatcher();
+        dataWatcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(FLAGS_INDEX,
+                WrappedDataWatcher.Registry.get(Byte.class)), (byte) 0);
+        dataWatcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(NO_GRAVITY_INDEX,
+                WrappedDataWatcher.Registry.get(Boolean.class)), true);
+        dataWatcher.setObject(new WrappedDataWatcher.WrappedDataWatcherObject(ITEM_INDEX,
+                WrappedDataWatcher.Registry.getItemStackSerializer(false)), MinecraftReflection.getMinecraftItemStack(item));
+
+        PacketContainer metadataPacket = protocolManager.createPacket(PacketType.Play.Server.ENTITY_METADATA);
+        metadataPacket.getIntegers().write(0, entityId);
+        metadataPacket.getWatchableCollectionModifier().write(0, dataWatcher.getWatchableObjects());
+        return metadataPacket;
+    }
+
+    private boolean isInRange(@NotNull Player player) {
+        if (!player.getWorld().equals(world)) return false;
+
+        player.getLocation(playerLocation);
+        double dx = playerLocation.getX() - x;
+        double dy = playerLocation.getY() - y;
+        double dz = playerLocation.getZ() - z;
+        return dx * dx + dy * dy + dz * dz <= TRACKING_RANGE * TRACKING_RANGE;
+    }
+
+    private static void send(@NotNull Player receiver, @NotNull PacketContainer packet) {
+        try {
+            protocolManager.sendServerPacket(receiver, packet);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Cannot send packet", e);
+        }
+    }
+}
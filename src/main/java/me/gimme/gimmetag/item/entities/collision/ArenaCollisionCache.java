@@ -0,0 +1,367 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import me.gimme.gimmetag.events.TagEndEvent;
+import me.gimme.gimmetag.events.TagStartEvent;
+import org.bukkit.*;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Openable;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a {@link VoxelCollisionView} of each world for the projectile physics.
+ * <p>
+ * When a round starts, the chunks around all participants are built asynchronously from chunk snapshots, as well as
+ * any chunk loaded during the round. Blocks that might change are invalidated in the views, and the views are cleared
+ * when the round ends.
+ */
+public class ArenaCollisionCache implements Listener {
+
+    private final Plugin plugin;
+    private final Map<World, VoxelCollisionView> views = new HashMap<>();
+    // Blocks right clicked during this tick, with their block data before the click, to be checked for changes
+    private final List<Block> clickedBlocks = new ArrayList<>();
+    private final List<BlockData> clickedBlockData = new ArrayList<>();
+
+    @Nullable
+    private Consumer<@NotNull Block> onBlockChange;
+    private boolean activeRound;
+
+    public ArenaCollisionCache(@NotNull Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Returns the view of the block collision shapes of the specified world.
+     *
+     * @param world the world to get the collision view of
+     * @return the view of the block collision shapes of the world
+     */
+    @NotNull
+    public BlockCollisionView getCollisionView(@NotNull World world) {
+        return views.computeIfAbsent(world, VoxelCollisionView::new);
+    }
+
+    /**
+     * Sets a consumer to be notified of every block that changes (or might change), in any world.
+     *
+     * @param onBlockChange the consumer to set
+     */
+    public void setOnBlockChange(@Nullable Consumer<@NotNull Block> onBlockChange) {
+        this.onBlockChange = onBlockChange;
+    }
+
+    /**
+     * Clears the collision views of all worlds.
+     */
+    public void clear() {
+        activeRound = false;
+        for (VoxelCollisionView view : views.values()) {
+            view.clear();
+        }
+        views.clear();
+    }
+
+    /**
+     * Takes a snapshot of the specified chunk and builds its sections asynchronously, unless already built or being
+     * built.
+     *
+     * @param chunk the chunk to build
+     */
+    private void build(@NotNull Chunk chunk) {
+        World world = chunk.getWorld();
+        VoxelCollisionView view = views.computeIfAbsent(world, VoxelCollisionView::new);
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        if (view.isBuiltOrBuilding(chunkX, chunkZ)) return;
+
+        view.beginBuild(chunkX, chunkZ);
+        ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+        int maxHeight = world.getMaxHeight();
+
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                VoxelCollisionView.Section[] sections = VoxelCollisionView.buildSections(snapshot, maxHeight);
+
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        view.finishBuild(chunkX, chunkZ, sections);
+                    }
+                }.runTask(plugin);
+            }
+        }.runTaskAsynchronously(plugin);
+    }
+
+    /**
+     * Invalidates the specified block, if it is in a world with a collision view, and notifies the block change
+     * consumer.
+     *
+     * @param block the block to invalidate
+     */
+    private void invalidate(@NotNull Block block) {
+        if (onBlockChange != null) onBlockChange.accept(block);
+
+        VoxelCollisionView view = views.get(block.getWorld());
+        if (view == null) return;
+
+        view.invalidate(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Invalidates the specified block and the blocks above and below it, for blocks that are two blocks high (like
+     * doors).
+     *
+     * @param block the block to invalidate
+     */
+    private void invalidateColumn(@NotNull Block block) {
+        invalidate(block);
+        invalidate(block.getRelative(BlockFace.UP));
+        invalidate(block.getRelative(BlockFace.DOWN));
+    }
+
+    private void invalidateAll(@NotNull Collection<Block> blocks) {
+        for (Block block : blocks) {
+            invalidate(block);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onTagStart(TagStartEvent event) {
+        if (event.isCancelled()) return;
+        activeRound = true;
+
+        int radius = Bukkit.getViewDistance();
+        Set<UUID> participants = new HashSet<>(event.getHunters());
+        participants.addAll(event.getRunners());
+
+        for (UUID uuid : participants) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) continue;
+
+            World world = player.getWorld();
+            Chunk center = player.getLocation().getChunk();
+            for (int x = center.getX() - radius; x <= center.getX() + radius; x++) {
+                for (int z = center.getZ() - radius; z <= center.getZ() + radius; z++) {
+                    if (world.isChunkLoaded(x, z)) build(world.getChunkAt(x, z));
+                }
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onTagEnd(TagEndEvent event) {
+        clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onChunkLoad(ChunkLoadEvent event) {
+        if (!activeRound) return;
+
+        build(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onChunkUnload(ChunkUnloadEvent event) {
+        VoxelCollisionView view = views.get(event.getWorld());
+        if (view == null) return;
+
+        view.removeChunk(event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onWorldUnload(WorldUnloadEvent event) {
+        if (event.isCancelled()) return;
+
+        views.remove(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockPlace(BlockPlaceEvent event) {
+        if (event.isCancelled()) return;
+
+        if (event instanceof BlockMultiPlaceEvent) {
+            for (BlockState state : ((BlockMultiPlaceEvent) event).getReplacedBlockStates()) {
+                invalidate(state.getBlock());
+            }
+        }
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockBreak(BlockBreakEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidateColumn(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockBurn(BlockBurnEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockFade(BlockFadeEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockForm(BlockFormEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockSpread(BlockSpreadEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockGrow(BlockGrowEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onLeavesDecay(LeavesDecayEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockFromTo(BlockFromToEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidate(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockExplode(BlockExplodeEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidateAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onEntityExplode(EntityExplodeEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidateAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        if (event.isCancelled()) return;
+
+        invalidateColumn(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onStructureGrow(StructureGrowEvent event) {
+        if (event.isCancelled()) return;
+
+        for (BlockState state : event.getBlocks()) {
+            invalidate(state.getBlock());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPistonExtend(BlockPistonExtendEvent event) {
+        if (event.isCancelled()) return;
+
+        onPistonMove(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPistonRetract(BlockPistonRetractEvent event) {
+        if (event.isCancelled()) return;
+
+        onPistonMove(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    private void onPistonMove(@NotNull Block piston, @NotNull List<Block> blocks, @NotNull BlockFace direction) {
+        invalidate(piston);
+        invalidate(piston.getRelative(direction));
+        invalidate(piston.getRelative(direction.getOppositeFace()));
+        for (Block block : blocks) {
+            invalidate(block);
+            invalidate(block.getRelative(direction));
+        }
+    }
+
+    /**
+     * Handles doors, trapdoors and fence gates being opened or closed by redstone.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onBlockRedstone(BlockRedstoneEvent event) {
+        if (!(event.getBlock().getBlockData() instanceof Openable)) return;
+
+        invalidateColumn(event.getBlock());
+    }
+
+    /**
+     * Handles players changing blocks by right clicking them without any other event (like opening doors, eating cake
+     * or tilling dirt).
+     * <p>
+     * The block only changes after the event, so the clicked blocks are checked at the next tick, all at once, and
+     * only the ones whose block data changed are invalidated.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    private void onPlayerInteract(PlayerInteractEvent event) {
+        if (event.getAction() != Action.RIGHT_CLICK_BLOCK) return;
+        if (event.useInteractedBlock() == Event.Result.DENY && event.useItemInHand() == Event.Result.DENY) return;
+        Block block = event.getClickedBlock();
+        if (block == null) return;
+
+        if (clickedBlocks.isEmpty()) {
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    invalidateChangedClickedBlocks();
+                }
+            }.runTask(plugin);
+        }
+        clickedBlocks.add(block);
+        clickedBlockData.add(block.getBlockData());
+    }
+
+    private void invalidateChangedClickedBlocks() {
+        for (int i = 0; i < clickedBlocks.size(); i++) {
+            Block block = clickedBlocks.get(i);
+            if (!block.getBlockData().equals(clickedBlockData.get(i))) invalidateColumn(block);
+        }
+        clickedBlocks.clear();
+        clickedBlockData.clear();
+    }
+}
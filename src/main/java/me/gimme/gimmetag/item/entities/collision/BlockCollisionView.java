@@ -0,0 +1,38 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A read-only view of the block collision shapes of a world.
+ * <p>
+ * Implementations that do not access the world directly (e.g., ones backed by snapshots) can be used off the main
+ * thread.
+ */
+public interface BlockCollisionView {
+    /**
+     * Returns the collision boxes of the block at the specified block coordinates.
+     * <p>
+     * The boxes are relative to the block's origin, flattened as {@code minX, minY, minZ, maxX, maxY, maxZ} for each
+     * box. The returned array is shared and must not be modified.
+     *
+     * @param x the x-coordinate of the block
+     * @param y the y-coordinate of the block
+     * @param z the z-coordinate of the block
+     * @return the collision boxes of the block, or an empty array if the block has no collision
+     */
+    @NotNull
+    double[] getCollisionBoxes(int x, int y, int z);
+
+    /**
+     * Returns if the collision boxes of the block at the specified block coordinates are known without accessing the
+     * world, so that {@link #getCollisionBoxes(int, int, int)} returns the exact boxes off the main thread too.
+     * <p>
+     * This can be called from any thread.
+     *
+     * @param x the x-coordinate of the block
+     * @param y the y-coordinate of the block
+     * @param z the z-coordinate of the block
+     * @return if the collision boxes of the block are known without accessing the world
+     */
+    boolean isKnown(int x, int y, int z);
+}
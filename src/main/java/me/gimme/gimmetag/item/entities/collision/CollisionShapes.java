@@ -0,0 +1,280 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.Bisected;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.MultipleFacing;
+import org.bukkit.block.data.type.Fence;
+import org.bukkit.block.data.type.Gate;
+import org.bukkit.block.data.type.GlassPane;
+import org.bukkit.block.data.type.Stairs;
+import org.bukkit.block.data.type.Wall;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Provides the collision boxes of blocks, cached per block data.
+ * <p>
+ * The Bukkit API only exposes the bounding box of the outline shape of a block, which is used for all blocks except
+ * the ones whose collision differs significantly from it: stairs are split into their actual steps, fences, walls,
+ * glass panes and iron bars are split into their post and the arms to each connected side, fences, walls and fence
+ * gates are made 1.5 blocks high, and soul sand is made 14/16 of a block high.
+ * <p>
+ * Other blocks with several collision boxes are covered by the bounding box of all of them.
+ */
+public final class CollisionShapes {
+
+    public static final double[] EMPTY = new double[0];
+    public static final double[] FULL_CUBE = {0, 0, 0, 1, 1, 1};
+    private static final double[] SOUL_SAND = {0, 0, 0, 1, 14 / 16d, 1};
+
+    private static final double TALL_HEIGHT = 1.5;
+    private static final double FENCE_WIDTH = 4 / 16d;      // Width of the posts and arms of fences
+    private static final double PANE_WIDTH = 2 / 16d;       // Width of the posts and arms of glass panes and iron bars
+    private static final double WALL_POST_WIDTH = 8 / 16d;  // Width of the posts of walls
+    private static final double WALL_ARM_WIDTH = 6 / 16d;   // Width of the arms of walls
+    private static final BlockFace[] SIDES = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
+    private static final Map<BlockData, double[]> shapeByBlockData = new ConcurrentHashMap<>();
+
+    private CollisionShapes() {
+    }
+
+    /**
+     * Returns the collision boxes of the specified block, relative to the block's origin.
+     * <p>
+     * The boxes are flattened as {@code minX, minY, minZ, maxX, maxY, maxZ} for each box. The returned array is shared
+     * and must not be modified.
+     *
+     * @param block the block to get the collision boxes of
+     * @return the collision boxes of the block, or an empty array if the block has no collision
+     */
+    @NotNull
+    public static double[] of(@NotNull Block block) {
+        BlockData blockData = block.getBlockData();
+        double[] shape = shapeByBlockData.get(blockData);
+        if (shape == null) {
+            shape = createShape(block, blockData);
+            shapeByBlockData.put(blockData, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Returns the cached collision boxes of blocks with the specified block data, or null if not yet cached.
+     * <p>
+     * This can be used off the main thread.
+     *
+     * @param blockData the block data to get the cached collision boxes of
+     * @return the cached collision boxes, or null if not yet cached
+     */
+    @Nullable
+    public static double[] getCached(@NotNull BlockData blockData) {
+        return shapeByBlockData.get(blockData);
+    }
+
+    /**
+     * Returns if all blocks of the specified type are full cubes, no matter their block data. This is the case for the
+     * occluding types, except for the ones whose collision is lower than their outline (like soul sand).
+     * <p>
+     * This can be used off the main thread.
+     *
+     * @param type the type of the blocks
+     * @return if all blocks of the type are full cubes
+     */
+    public static boolean isFullCube(@NotNull Material type) {
+        return type.isOccluding() && type != Material.SOUL_SAND;
+    }
+
+    /**
+     * Clears the cached collision boxes of all block data.
+     */
+    public static void clearCache() {
+        shapeByBlockData.clear();
+    }
+
+    @NotNull
+    private static double[] createShape(@NotNull Block block, @NotNull BlockData blockData) {
+        if (block.isPassable()) return EMPTY;
+        if (blockData.getMaterial() == Material.SOUL_SAND) return SOUL_SAND;
+        if (blockData instanceof Stairs) return createStairsShape((Stairs) blockData);
+        if (isPane(blockData)) {
+            MultipleFacing pane = (MultipleFacing) blockData;
+            return createConnectedShape(true, pane::hasFace, PANE_WIDTH, PANE_WIDTH, 1);
+        }
+        if (blockData instanceof Fence) {
+            Fence fence = (Fence) blockData;
+            return createConnectedShape(true, fence::hasFace, FENCE_WIDTH, FENCE_WIDTH, TALL_HEIGHT);
+        }
+        if (blockData instanceof Wall) {
+            Wall wall = (Wall) blockData;
+            return createConnectedShape(wall.isUp(), side -> wall.getHeight(side) != Wall.Height.NONE,
+                    WALL_POST_WIDTH, WALL_ARM_WIDTH, TALL_HEIGHT);
+        }
+
+        BoundingBox box = block.getBoundingBox();
+        double minX = box.getMinX() - block.getX();
+        double minY = box.getMinY() - block.getY();
+        double minZ = box.getMinZ() - block.getZ();
+        double maxX = box.getMaxX() - block.getX();
+        double maxY = box.getMaxY() - block.getY();
+        double maxZ = box.getMaxZ() - block.getZ();
+        if (isTall(blockData)) maxY = TALL_HEIGHT;
+
+        if (minX == 0 && minY == 0 && minZ == 0 && maxX == 1 && maxY == 1 && maxZ == 1) return FULL_CUBE;
+        return new double[]{minX, minY, minZ, maxX, maxY, maxZ};
+    }
+
+    /**
+     * Creates the collision boxes of stairs, as a half slab and the quarters of the steps.
+     *
+     * @param stairs the block data of the stairs
+     * @return the collision boxes of the stairs
+     */
+    @NotNull
+    private static double[] createStairsShape(@NotNull Stairs stairs) {
+        boolean top = stairs.getHalf() == Bisected.Half.TOP;
+        BlockFace back = stairs.getFacing();
+        BlockFace left = rotateCounterClockwise(back);
+        BlockFace front = back.getOppositeFace();
+        BlockFace right = left.getOppositeFace();
+
+        // The quarters of the step half are each given by a pair of directions
+        BlockFace[][] quarters;
+        switch (stairs.getShape()) {
+            case OUTER_LEFT:
+                quarters = new BlockFace[][]{{back, left}};
+                break;
+            case OUTER_RIGHT:
+                quarters = new BlockFace[][]{{back, right}};
+                break;
+            case INNER_LEFT:
+                quarters = new BlockFace[][]{{back, left}, {back, right}, {front, left}};
+                break;
+            case INNER_RIGHT:
+                quarters = new BlockFace[][]{{back, left}, {back, right}, {front, right}};
+                break;
+            default:
+                quarters = new BlockFace[][]{{back, left}, {back, right}};
+        }
+
+        double[] shape = new double[6 + quarters.length * 6];
+        // The slab half
+        shape[1] = top ? 0.5 : 0;
+        shape[3] = 1;
+        shape[4] = top ? 1 : 0.5;
+        shape[5] = 1;
+
+        for (int i = 0; i < quarters.length; i++) {
+            int offset = 6 + i * 6;
+            int modX = quarters[i][0].getModX() + quarters[i][1].getModX();
+            int modZ = quarters[i][0].getModZ() + quarters[i][1].getModZ();
+
+            shape[offset] = modX > 0 ? 0.5 : 0;
+            shape[offset + 1] = top ? 0 : 0.5;
+            shape[offset + 2] = modZ > 0 ? 0.5 : 0;
+            shape[offset + 3] = modX < 0 ? 0.5 : 1;
+            shape[offset + 4] = top ? 0.5 : 1;
+            shape[offset + 5] = modZ < 0 ? 0.5 : 1;
+        }
+
+        return shape;
+    }
+
+    /**
+     * Creates the collision boxes of a block that connects to the sides (like a fence), as a post in the center and an
+     * arm from the center to each connected side, all as high as the block.
+     *
+     * @param post      if the block has a post
+     * @param connected the test of if the block connects to a side
+     * @param postWidth the width of the post
+     * @param armWidth  the width of the arms
+     * @param height    the height of the block
+     * @return the collision boxes of the block
+     */
+    @NotNull
+    private static double[] createConnectedShape(boolean post, @NotNull Predicate<BlockFace> connected,
+                                                 double postWidth, double armWidth, double height) {
+        double[] shape = new double[(1 + SIDES.length) * 6];
+        int length = 0;
+
+        if (post) {
+            double min = 0.5 - postWidth / 2;
+            double max = 0.5 + postWidth / 2;
+            length = addBox(shape, length, min, 0, min, max, height, max);
+        }
+
+        double armMin = 0.5 - armWidth / 2;
+        double armMax = 0.5 + armWidth / 2;
+        for (BlockFace side : SIDES) {
+            if (!connected.test(side)) continue;
+            int modX = side.getModX();
+            int modZ = side.getModZ();
+            length = addBox(shape, length,
+                    modX > 0 ? 0.5 : modX < 0 ? 0 : armMin, 0, modZ > 0 ? 0.5 : modZ < 0 ? 0 : armMin,
+                    modX > 0 ? 1 : modX < 0 ? 0.5 : armMax, height, modZ > 0 ? 1 : modZ < 0 ? 0.5 : armMax);
+        }
+
+        return length == 0 ? EMPTY : Arrays.copyOf(shape, length);
+    }
+
+    /**
+     * Puts the specified box into the given collision boxes at the specified length.
+     *
+     * @return the length of the collision boxes with the box
+     */
+    private static int addBox(@NotNull double[] shape, int length,
+                              double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        shape[length] = minX;
+        shape[length + 1] = minY;
+        shape[length + 2] = minZ;
+        shape[length + 3] = maxX;
+        shape[length + 4] = maxY;
+        shape[length + 5] = maxZ;
+        return length + 6;
+    }
+
+    /**
+     * Returns if blocks with the specified block data are glass panes or iron bars, which Bukkit gives the block data
+     * of fences, except for the stained glass panes.
+     *
+     * @param blockData the block data to check
+     * @return if the block data is of a glass pane or iron bars
+     */
+    private static boolean isPane(@NotNull BlockData blockData) {
+        Material material = blockData.getMaterial();
+        return blockData instanceof GlassPane || material == Material.GLASS_PANE || material == Material.IRON_BARS;
+    }
+
+    /**
+     * Returns if blocks with the specified block data have a collision that is 1.5 blocks high.
+     *
+     * @param blockData the block data to check
+     * @return if the collision is 1.5 blocks high
+     */
+    private static boolean isTall(@NotNull BlockData blockData) {
+        return blockData instanceof Gate;
+    }
+
+    @NotNull
+    private static BlockFace rotateCounterClockwise(@NotNull BlockFace face) {
+        switch (face) {
+            case NORTH:
+                return BlockFace.WEST;
+            case WEST:
+                return BlockFace.SOUTH;
+            case SOUTH:
+                return BlockFace.EAST;
+            default:
+                return BlockFace.NORTH;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.bukkit.block.BlockFace;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sweeps a sphere along a straight path against the block collision boxes of a {@link BlockCollisionView}, finding
+ * the first point of contact and the normal of the surface that was hit.
+ * <p>
+ * The sphere is swept as the collision boxes expanded by its radius, which only differs from an exact sphere at the
+ * edges and corners of the boxes, by less than the radius.
+ * <p>
+ * Sweeping does not allocate any objects, and only uses the given view, so it can be used off the main thread with a
+ * view that allows it.
+ */
+public final class SweptSphere {
+
+    private static final double MIN_MOVEMENT_SQUARED = 1.0E-12;
+    private static final double CONTACT_TOLERANCE = 1.0E-7; // Fraction of the movement allowed to start inside a box
+
+    private SweptSphere() {
+    }
+
+    /**
+     * Sweeps a sphere with the specified radius from the specified position along the specified movement, and stores
+     * the first contact with a block collision box in the given hit.
+     * <p>
+     * Boxes that the sphere already overlaps at the start are ignored, so that a sphere that is resting on, or stuck
+     * in, a surface can move away from it.
+     *
+     * @param view   the view of the block collision boxes to sweep against
+     * @param x      the start x-coordinate of the center of the sphere
+     * @param y      the start y-coordinate of the center of the sphere
+     * @param z      the start z-coordinate of the center of the sphere
+     * @param dx     the movement along the x-axis
+     * @param dy     the movement along the y-axis
+     * @param dz     the movement along the z-axis
+     * @param radius the radius of the sphere
+     * @param hit    the hit to store the first contact in, if any
+     * @return if the sphere hit a block collision box along the movement
+     */
+    public static boolean sweep(@NotNull BlockCollisionView view, double x, double y, double z,
+                                double dx, double dy, double dz, double radius, @NotNull Hit hit) {
+        if (dx * dx + dy * dy + dz * dz < MIN_MOVEMENT_SQUARED) return false;
+
+        // Blocks that the swept sphere can touch, with one more block below for collision boxes higher than a block
+        int minBlockX = floor(Math.min(x, x + dx) - radius);
+        int minBlockY = floor(Math.min(y, y + dy) - radius) - 1;
+        int minBlockZ = floor(Math.min(z, z + dz) - radius);
+        int maxBlockX = floor(Math.max(x, x + dx) + radius);
+        int maxBlockY = floor(Math.max(y, y + dy) + radius);
+        int maxBlockZ = floor(Math.max(z, z + dz) + radius);
+
+        boolean found = false;
+        double firstContact = 1;
+
+        for (int blockX = minBlockX; blockX <= maxBlockX; blockX++) {
+            for (int blockZ = minBlockZ; blockZ <= maxBlockZ; blockZ++) {
+                for (int blockY = minBlockY; blockY <= maxBlockY; blockY++) {
+                    double[] boxes = view.getCollisionBoxes(blockX, blockY, blockZ);
+
+                    for (int i = 0; i < boxes.length; i += 6) {
+                        if (!sweepBox(x, y, z, dx, dy, dz,
+                                blockX + boxes[i] - radius, blockY + boxes[i + 1] - radius, blockZ + boxes[i + 2] - radius,
+                                blockX + boxes[i + 3] + radius, blockY + boxes[i + 4] + radius, blockZ + boxes[i + 5] + radius,
+                                firstContact, hit)) continue;
+
+                        found = true;
+                        firstContact = hit.fraction;
+                        hit.blockX = blockX;
+                        hit.blockY = blockY;
+                        hit.blockZ = blockZ;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Sweeps a point from the specified position along the specified movement against the specified box, and stores
+     * the contact in the given hit if it is not later than the specified max fraction of the movement.
+     * <p>
+     * To sweep a sphere, the box should be expanded by the radius of the sphere. A box that the point already is inside
+     * of at the start is ignored.
+     * <p>
+     * Only the fraction and the normal of the given hit are set.
+     *
+     * @param x           the start x-coordinate of the point
+     * @param y           the start y-coordinate of the point
+     * @param z           the start z-coordinate of the point
+     * @param dx          the movement along the x-axis
+     * @param dy          the movement along the y-axis
+     * @param dz          the movement along the z-axis
+     * @param minX        the min x-coordinate of the box
+     * @param minY        the min y-coordinate of the box
+     * @param minZ        the min z-coordinate of the box
+     * @param maxX        the max x-coordinate of the box
+     * @param maxY        the max y-coordinate of the box
+     * @param maxZ        the max z-coordinate of the box
+     * @param maxFraction the max fraction of the movement to store a contact at
+     * @param hit         the hit to store the contact in, if any
+     * @return if the box was hit within the max fraction of the movement
+     */
+    public static boolean sweepBox(double x, double y, double z, double dx, double dy, double dz,
+                                   double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                   double maxFraction, @NotNull Hit hit) {
+        // Slab test of the movement against the box
+        double enter = Double.NEGATIVE_INFINITY;
+        double exit = Double.POSITIVE_INFINITY;
+        int axis = -1;
+
+        if (dx == 0) {
+            if (x <= minX || x >= maxX) return false;
+        } else {
+            double near = ((dx > 0 ? minX : maxX) - x) / dx;
+            double far = ((dx > 0 ? maxX : minX) - x) / dx;
+            if (near > enter) {
+                enter = near;
+                axis = 0;
+            }
+            exit = Math.min(exit, far);
+        }
+        if (dy == 0) {
+            if (y <= minY || y >= maxY) return false;
+        } else {
+            double near = ((dy > 0 ? minY : maxY) - y) / dy;
+            double far = ((dy > 0 ? maxY : minY) - y) / dy;
+            if (near > enter) {
+                enter = near;
+                axis = 1;
+            }
+            exit = Math.min(exit, far);
+        }
+        if (dz == 0) {
+            if (z <= minZ || z >= maxZ) return false;
+        } else {
+            double near = ((dz > 0 ? minZ : maxZ) - z) / dz;
+            double far = ((dz > 0 ? maxZ : minZ) - z) / dz;
+            if (near > enter) {
+                enter = near;
+                axis = 2;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        // Missed, already inside at the start, or later than the max fraction
+        if (axis < 0 || enter >= exit || enter < -CONTACT_TOLERANCE || enter > maxFraction) return false;
+
+        hit.fraction = Math.max(0, enter);
+        hit.normalX = axis == 0 ? (dx > 0 ? -1 : 1) : 0;
+        hit.normalY = axis == 1 ? (dy > 0 ? -1 : 1) : 0;
+        hit.normalZ = axis == 2 ? (dz > 0 ? -1 : 1) : 0;
+        return true;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+
+    /**
+     * The first contact of a sweep, reused between sweeps to not allocate.
+     */
+    public static class Hit {
+        private double fraction;
+        private int normalX;
+        private int normalY;
+        private int normalZ;
+        private int blockX;
+        private int blockY;
+        private int blockZ;
+
+        /**
+         * @return the fraction of the movement that was made before the contact, between 0 and 1
+         */
+        public double getFraction() {
+            return fraction;
+        }
+
+        /**
+         * @return the x-component of the normal of the surface that was hit
+         */
+        public int getNormalX() {
+            return normalX;
+        }
+
+        /**
+         * @return the y-component of the normal of the surface that was hit
+         */
+        public int getNormalY() {
+            return normalY;
+        }
+
+        /**
+         * @return the z-component of the normal of the surface that was hit
+         */
+        public int getNormalZ() {
+            return normalZ;
+        }
+
+        /**
+         * @return the x-coordinate of the block that was hit
+         */
+        public int getBlockX() {
+            return blockX;
+        }
+
+        /**
+         * @return the y-coordinate of the block that was hit
+         */
+        public int getBlockY() {
+            return blockY;
+        }
+
+        /**
+         * @return the z-coordinate of the block that was hit
+         */
+        public int getBlockZ() {
+            return blockZ;
+        }
+
+        /**
+         * @return the block face pointing in the direction of the normal of the surface that was hit
+         */
+        @Nullable
+        public BlockFace getBlockFace() {
+            if (normalX != 0) return normalX > 0 ? BlockFace.EAST : BlockFace.WEST;
+            if (normalY != 0) return normalY > 0 ? BlockFace.UP : BlockFace.DOWN;
+            if (normalZ != 0) return normalZ > 0 ? BlockFace.SOUTH : BlockFace.NORTH;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A collision view of a world backed by packed bitsets of the collision voxels of each chunk section, built from chunk
+ * snapshots.
+ * <p>
+ * Each voxel is either empty, a full cube, or a solid block with a cached collision shape. Voxels whose shapes are
+ * unknown (not yet cached, or invalidated by a block change) are looked up in the world the first time they are
+ * queried on the main thread, and stored from then on. Sections that have not been built are always looked up in the
+ * world.
+ * <p>
+ * The sections are only modified on the main thread, in place, so that the view can be read off the main thread
+ * without copying a section for every changed voxel. The bitsets are patched one word at a time, and the shapes are
+ * replaced with a single published write, so that a voxel read off the main thread is always either in its old or new
+ * state, or unknown. Off the main thread, sections that have not been built are empty and voxels with unknown shapes
+ * are full cubes, since the world cannot be accessed.
+ */
+public class VoxelCollisionView implements BlockCollisionView {
+
+    private static final int SECTION_SIZE = 16;
+    private static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+
+    private final World world;
+    private final int maxHeight;
+    private final WorldCollisionView worldView;
+
+    private final Map<Long, Section[]> sectionsByChunk = new ConcurrentHashMap<>();
+    // The sections of the last chunk queried on the main thread, to not box the key of consecutive queries in one chunk
+    private long lastChunkKey;
+    private Section[] lastChunkSections;
+    // Voxels invalidated in chunks that are being built, to be applied when the build is finished
+    private final Map<Long, List<Integer>> pendingInvalidations = new HashMap<>();
+
+    public VoxelCollisionView(@NotNull World world) {
+        this.world = world;
+        this.maxHeight = world.getMaxHeight();
+        this.worldView = new WorldCollisionView(world);
+    }
+
+    @Override
+    @NotNull
+    public double[] getCollisionBoxes(int x, int y, int z) {
+        if (y < 0 || y >= maxHeight) return CollisionShapes.EMPTY;
+
+        Section[] sections = getSections(chunkKey(x >> 4, z >> 4));
+        Section section = sections != null ? sections[y >> 4] : null;
+        if (section == null) return Bukkit.isPrimaryThread() ? worldView.getCollisionBoxes(x, y, z) : CollisionShapes.EMPTY;
+
+        int index = voxelIndex(x, y, z);
+        if (!section.isSolid(index)) return CollisionShapes.EMPTY;
+        if (section.isFull(index)) return CollisionShapes.FULL_CUBE;
+
+        double[] shape = section.getShape(index);
+        if (shape != null) return shape;
+        return Bukkit.isPrimaryThread() ? resolve(x, y, z) : CollisionShapes.FULL_CUBE;
+    }
+
+    @Override
+    public boolean isKnown(int x, int y, int z) {
+        if (y < 0 || y >= maxHeight) return true;
+
+        Section[] sections = getSections(chunkKey(x >> 4, z >> 4));
+        Section section = sections != null ? sections[y >> 4] : null;
+        if (section == null) return false;
+
+        int index = voxelIndex(x, y, z);
+        return !section.isSolid(index) || section.isFull(index) || section.getShape(index) != null;
+    }
+
+    /**
+     * Returns if the chunk at the specified chunk coordinates is built or being built.
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     * @return if the chunk is built or being built
+     */
+    boolean isBuiltOrBuilding(int chunkX, int chunkZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        return sectionsByChunk.containsKey(key) || pendingInvalidations.containsKey(key);
+    }
+
+    /**
+     * Marks the chunk at the specified chunk coordinates as being built, for block changes to be tracked until the
+     * build is finished. This should be called when the snapshot to build from is taken.
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     */
+    void beginBuild(int chunkX, int chunkZ) {
+        pendingInvalidations.putIfAbsent(chunkKey(chunkX, chunkZ), new ArrayList<>());
+    }
+
+    /**
+     * Adds the built sections of the chunk at the specified chunk coordinates, applying any block changes since the
+     * build began.
+     *
+     * @param chunkX   the x-coordinate of the chunk
+     * @param chunkZ   the z-coordinate of the chunk
+     * @param sections the built sections of the chunk
+     */
+    void finishBuild(int chunkX, int chunkZ, @NotNull Section[] sections) {
+        long key = chunkKey(chunkX, chunkZ);
+        List<Integer> invalidations = pendingInvalidations.remove(key);
+        if (invalidations == null) return; // Removed or cleared while building
+
+        sectionsByChunk.put(key, sections);
+        lastChunkSections = null;
+        for (int packed : invalidations) {
+            setVoxel((chunkX << 4) | (packed & 15), packed >>> 8, (chunkZ << 4) | ((packed >>> 4) & 15), null);
+        }
+    }
+
+    /**
+     * Marks the voxel at the specified block coordinates as unknown, to be looked up in the world the next time it is
+     * queried. This should be called whenever the block might change.
+     *
+     * @param x the x-coordinate of the block
+     * @param y the y-coordinate of the block
+     * @param z the z-coordinate of the block
+     */
+    void invalidate(int x, int y, int z) {
+        if (y < 0 || y >= maxHeight) return;
+
+        List<Integer> invalidations = pendingInvalidations.get(chunkKey(x >> 4, z >> 4));
+        if (invalidations != null) invalidations.add((y << 8) | ((z & 15) << 4) | (x & 15));
+
+        setVoxel(x, y, z, null);
+    }
+
+    /**
+     * Removes the sections of the chunk at the specified chunk coordinates.
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     */
+    void removeChunk(int chunkX, int chunkZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        sectionsByChunk.remove(key);
+        pendingInvalidations.remove(key);
+        lastChunkSections = null;
+    }
+
+    /**
+     * Removes the sections of all chunks.
+     */
+    void clear() {
+        sectionsByChunk.clear();
+        pendingInvalidations.clear();
+        lastChunkSections = null;
+    }
+
+    /**
+     * Returns the sections of the chunk with the specified key, or null if not built.
+     * <p>
+     * On the main thread, the sections of the last queried chunk are remembered until they are replaced or removed.
+     */
+    @Nullable
+    private Section[] getSections(long key) {
+        if (!Bukkit.isPrimaryThread()) return sectionsByChunk.get(key);
+
+        if (lastChunkSections == null || lastChunkKey != key) {
+            lastChunkSections = sectionsByChunk.get(key);
+            lastChunkKey = key;
+        }
+        return lastChunkSections;
+    }
+
+    /**
+     * Looks up the unknown voxel at the specified block coordinates in the world and stores its shape.
+     */
+    @NotNull
+    private double[] resolve(int x, int y, int z) {
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) return CollisionShapes.EMPTY;
+
+        Block block = world.getBlockAt(x, y, z);
+        double[] shape = CollisionShapes.of(block);
+        // Moving blocks are replaced without any event when they stop, so they are left unknown
+        if (block.getType() != Material.MOVING_PISTON) setVoxel(x, y, z, shape);
+        return shape;
+    }
+
+    /**
+     * Sets the voxel at the specified block coordinates to the specified shape, or to unknown if null, in place.
+     * <p>
+     * The shared empty section is never modified, but replaced with a new section in the array of the chunk.
+     */
+    private void setVoxel(int x, int y, int z, @Nullable double[] shape) {
+        Section[] sections = getSections(chunkKey(x >> 4, z >> 4));
+        if (sections == null) return;
+        Section section = sections[y >> 4];
+        if (section == null) return;
+
+        if (section == Section.EMPTY) {
+            if (shape != null && shape.length == 0) return;
+            section = new Section(new long[SECTION_VOLUME / 64], new long[SECTION_VOLUME / 64], Collections.emptyMap());
+            sections[y >> 4] = section;
+        }
+        section.set(voxelIndex(x, y, z), shape);
+    }
+
+    /**
+     * Builds the sections of a chunk from the specified snapshot. This can be done off the main thread.
+     * <p>
+     * Blocks of types that are always full cubes are full cubes, and other blocks get their shapes from the cache of
+     * {@link CollisionShapes}, or are unknown if not yet cached.
+     *
+     * @param snapshot  the snapshot of the chunk to build the sections of
+     * @param maxHeight the max height of the world of the chunk
+     * @return the built sections of the chunk
+     */
+    @NotNull
+    static Section[] buildSections(@NotNull ChunkSnapshot snapshot, int maxHeight) {
+        Section[] sections = new Section[maxHeight / SECTION_SIZE];
+
+        for (int sectionY = 0; sectionY < sections.length; sectionY++) {
+            if (snapshot.isSectionEmpty(sectionY)) {
+                sections[sectionY] = Section.EMPTY;
+                continue;
+            }
+
+            long[] solid = new long[SECTION_VOLUME / 64];
+            long[] full = new long[SECTION_VOLUME / 64];
+            Map<Integer, double[]> shapes = new HashMap<>();
+
+            for (int y = 0; y < SECTION_SIZE; y++) {
+                int blockY = sectionY * SECTION_SIZE + y;
+                for (int z = 0; z < SECTION_SIZE; z++) {
+                    for (int x = 0; x < SECTION_SIZE; x++) {
+                        Material type = snapshot.getBlockType(x, blockY, z);
+                        if (type.isAir()) continue;
+
+                        int index = (y << 8) | (z << 4) | x;
+                        if (CollisionShapes.isFullCube(type)) {
+                            solid[index >>> 6] |= 1L << index;
+                            full[index >>> 6] |= 1L << index;
+                            continue;
+                        }
+
+                        double[] shape = CollisionShapes.getCached(snapshot.getBlockData(x, blockY, z));
+                        if (shape != null && shape.length == 0) continue;
+                        solid[index >>> 6] |= 1L << index;
+                        if (shape == CollisionShapes.FULL_CUBE) full[index >>> 6] |= 1L << index;
+                        else if (shape != null) shapes.put(index, shape);
+                    }
+                }
+            }
+
+            sections[sectionY] = new Section(solid, full, shapes);
+        }
+
+        return sections;
+    }
+
+    private static int voxelIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * The collision voxels of a 16x16x16 chunk section, as bitsets of solid voxels and full cube voxels, and the shapes
+     * of the other solid voxels, sorted by voxel index.
+     * <p>
+     * A solid voxel that is not a full cube and has no shape is unknown.
+     */
+    static final class Section {
+        static final Section EMPTY = new Section(new long[SECTION_VOLUME / 64], new long[SECTION_VOLUME / 64], Collections.emptyMap());
+
+        private final long[] solid;
+        private final long[] full;
+        private volatile Shapes shapes; // Never modified, but replaced
+
+        private Section(@NotNull long[] solid, @NotNull long[] full, @NotNull Map<Integer, double[]> shapes) {
+            this.solid = solid;
+            this.full = full;
+
+            short[] indices = new short[shapes.size()];
+            double[][] shapeArray = new double[shapes.size()][];
+            int i = 0;
+            for (Map.Entry<Integer, double[]> entry : new TreeMap<>(shapes).entrySet()) {
+                indices[i] = entry.getKey().shortValue();
+                shapeArray[i] = entry.getValue();
+                i++;
+            }
+            this.shapes = new Shapes(indices, shapeArray);
+        }
+
+        boolean isSolid(int index) {
+            return (solid[index >>> 6] & (1L << index)) != 0;
+        }
+
+        boolean isFull(int index) {
+            return (full[index >>> 6] & (1L << index)) != 0;
+        }
+
+        @Nullable
+        double[] getShape(int index) {
+            return shapes.get(index);
+        }
+
+        /**
+         * Sets the specified voxel to the specified shape, or to unknown if null. This must only be called on the main
+         * thread.
+         * <p>
+         * The changes are made in an order where the voxel is never read as anything else than its old state, its new
+         * state or unknown: a voxel is made solid before its full bit and shape are removed, and made empty before
+         * them. The shapes are only replaced if the shape of the voxel changes.
+         */
+        void set(int index, @Nullable double[] shape) {
+            long bit = 1L << index;
+            int word = index >>> 6;
+            boolean empty = shape != null && shape.length == 0;
+            boolean fullCube = shape == CollisionShapes.FULL_CUBE;
+
+            if (empty) solid[word] &= ~bit;
+            else solid[word] |= bit;
+            if (fullCube) full[word] |= bit;
+            else full[word] &= ~bit;
+
+            double[] newShape = empty || fullCube ? null : shape;
+            if (shapes.get(index) != newShape) shapes = shapes.with(index, newShape);
+        }
+    }
+
+    /**
+     * The shapes of the solid voxels of a section that are not full cubes, sorted by voxel index. Never modified after
+     * being created.
+     */
+    private static final class Shapes {
+        private final short[] indices;
+        private final double[][] shapes;
+
+        private Shapes(@NotNull short[] indices, @NotNull double[][] shapes) {
+            this.indices = indices;
+            this.shapes = shapes;
+        }
+
+        @Nullable
+        private double[] get(int index) {
+            int i = Arrays.binarySearch(indices, (short) index);
+            return i >= 0 ? shapes[i] : null;
+        }
+
+        /**
+         * Returns a copy of these shapes where the specified voxel has the specified shape, or none if null.
+         */
+        @NotNull
+        private Shapes with(int index, @Nullable double[] shape) {
+            int i = Arrays.binarySearch(indices, (short) index);
+            if (i >= 0) {
+                if (shape != null) {
+                    double[][] newShapes = shapes.clone();
+                    newShapes[i] = shape;
+                    return new Shapes(indices, newShapes);
+                }
+
+                short[] newIndices = new short[indices.length - 1];
+                double[][] newShapes = new double[shapes.length - 1][];
+                System.arraycopy(indices, 0, newIndices, 0, i);
+                System.arraycopy(indices, i + 1, newIndices, i, indices.length - i - 1);
+                System.arraycopy(shapes, 0, newShapes, 0, i);
+                System.arraycopy(shapes, i + 1, newShapes, i, shapes.length - i - 1);
+                return new Shapes(newIndices, newShapes);
+            }
+            if (shape == null) return this;
+
+            int insertion = -i - 1;
+            short[] newIndices = new short[indices.length + 1];
+            double[][] newShapes = new double[shapes.length + 1][];
+            System.arraycopy(indices, 0, newIndices, 0, insertion);
+            System.arraycopy(indices, insertion, newIndices, insertion + 1, indices.length - insertion);
+            System.arraycopy(shapes, 0, newShapes, 0, insertion);
+            System.arraycopy(shapes, insertion, newShapes, insertion + 1, shapes.length - insertion);
+            newIndices[insertion] = (short) index;
+            newShapes[insertion] = shape;
+            return new Shapes(newIndices, newShapes);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Casts rays through the blocks of a {@link BlockCollisionView}, visiting the blocks along a ray in order with a 3D
+ * digital differential analyzer (DDA), and testing the ray against the collision boxes of each visited block.
+ * <p>
+ * Casting a ray does not allocate any objects, and only uses the given view, so it can be done off the main thread
+ * with a view that allows it.
+ */
+public final class VoxelRaycast {
+
+    private VoxelRaycast() {
+    }
+
+    /**
+     * Returns if the straight line between the specified points is blocked by any block collision box.
+     * <p>
+     * Boxes that the start point is inside of are ignored, so that a ray from a point resting on, or stuck in, a
+     * surface is not blocked by it.
+     *
+     * @param view    the view of the block collision boxes to cast the ray against
+     * @param fromX   the x-coordinate of the start of the ray
+     * @param fromY   the y-coordinate of the start of the ray
+     * @param fromZ   the z-coordinate of the start of the ray
+     * @param toX     the x-coordinate of the end of the ray
+     * @param toY     the y-coordinate of the end of the ray
+     * @param toZ     the z-coordinate of the end of the ray
+     * @param scratch a hit to use for the box tests, which is overwritten
+     * @return if the line between the points is blocked
+     */
+    public static boolean isBlocked(@NotNull BlockCollisionView view, double fromX, double fromY, double fromZ,
+                                    double toX, double toY, double toZ, @NotNull SweptSphere.Hit scratch) {
+        double dx = toX - fromX;
+        double dy = toY - fromY;
+        double dz = toZ - fromZ;
+
+        int blockX = floor(fromX);
+        int blockY = floor(fromY);
+        int blockZ = floor(fromZ);
+        int endX = floor(toX);
+        int endY = floor(toY);
+        int endZ = floor(toZ);
+
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+        // Fractions of the ray at the next block boundary along each axis, and between block boundaries
+        double nextX = dx != 0 ? ((dx > 0 ? blockX + 1 : blockX) - fromX) / dx : Double.POSITIVE_INFINITY;
+        double nextY = dy != 0 ? ((dy > 0 ? blockY + 1 : blockY) - fromY) / dy : Double.POSITIVE_INFINITY;
+        double nextZ = dz != 0 ? ((dz > 0 ? blockZ + 1 : blockZ) - fromZ) / dz : Double.POSITIVE_INFINITY;
+        double deltaX = dx != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+        double deltaY = dy != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+        double deltaZ = dz != 0 ? Math.abs(1 / dz) : Double.POSITIVE_INFINITY;
+
+        int steps = Math.abs(endX - blockX) + Math.abs(endY - blockY) + Math.abs(endZ - blockZ);
+        for (int i = 0; i <= steps; i++) {
+            double[] boxes = view.getCollisionBoxes(blockX, blockY, blockZ);
+            for (int b = 0; b < boxes.length; b += 6) {
+                if (SweptSphere.sweepBox(fromX, fromY, fromZ, dx, dy, dz,
+                        blockX + boxes[b], blockY + boxes[b + 1], blockZ + boxes[b + 2],
+                        blockX + boxes[b + 3], blockY + boxes[b + 4], blockZ + boxes[b + 5],
+                        1, scratch)) return true;
+            }
+
+            // Step into the next block along the axis with the closest boundary
+            if (nextX <= nextY && nextX <= nextZ) {
+                blockX += stepX;
+                nextX += deltaX;
+            } else if (nextY <= nextZ) {
+                blockY += stepY;
+                nextY += deltaY;
+            } else {
+                blockZ += stepZ;
+                nextZ += deltaZ;
+            }
+        }
+
+        return false;
+    }
+
+    private static int floor(double value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+}
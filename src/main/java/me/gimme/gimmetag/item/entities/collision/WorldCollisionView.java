@@ -0,0 +1,32 @@
+package me.gimme.gimmetag.item.entities.collision;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A collision view that reads the blocks of a world directly, and therefore only can be used on the main thread.
+ * <p>
+ * Blocks in unloaded chunks have no collision, to never load chunks.
+ */
+public class WorldCollisionView implements BlockCollisionView {
+
+    private final World world;
+
+    public WorldCollisionView(@NotNull World world) {
+        this.world = world;
+    }
+
+    @Override
+    @NotNull
+    public double[] getCollisionBoxes(int x, int y, int z) {
+        if (y < 0 || y >= world.getMaxHeight()) return CollisionShapes.EMPTY;
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) return CollisionShapes.EMPTY;
+
+        return CollisionShapes.of(world.getBlockAt(x, y, z));
+    }
+
+    @Override
+    public boolean isKnown(int x, int y, int z) {
+        return false;
+    }
+}
@@ -2,16 +2,16 @@ package me.gimme.gimmetag.item.items;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BouncyProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import me.gimme.gimmetag.sfx.StandardSoundEffect;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.SoundCategory;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Projectile;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
@@ -23,13 +23,15 @@ public class CookedEgg extends BouncyProjectileItem {
 
     private static final String NAME = "Cooked Egg";
     private static final Material MATERIAL = Material.EGG;
+    private static final double COLLISION_RADIUS = 0.5; // Distance to other projectiles to collide with in the air
 
-    public CookedEgg(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull Plugin plugin) {
-        super(id, NAME, MATERIAL, config, plugin);
+    public CookedEgg(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull ProjectileEngine projectileEngine) {
+        super(id, NAME, MATERIAL, config, projectileEngine);
 
         setGlowing(false);
         setDisplayItem(MATERIAL, false);
         setUseSound(new StandardSoundEffect(Sound.ENTITY_EGG_THROW, SoundCategory.NEUTRAL));
+        setInteractionRadius(COLLISION_RADIUS);
     }
 
     @Override
@@ -37,11 +39,17 @@ public class CookedEgg extends BouncyProjectileItem {
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
 
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
+    }
+
+    @Override
+    protected void onNearbyProjectile(@NotNull BouncyProjectile projectile, @NotNull BouncyProjectile other) {
+        // Break on other projectiles in the air
+        if (!projectile.isGrounded() && !other.isGrounded()) projectile.explode();
     }
 }
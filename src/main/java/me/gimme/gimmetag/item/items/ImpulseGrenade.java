@@ -2,14 +2,14 @@ package me.gimme.gimmetag.item.items;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BouncyProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import me.gimme.gimmetag.sfx.SoundEffects;
 import org.bukkit.*;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Projectile;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 
@@ -21,8 +21,8 @@ public class ImpulseGrenade extends BouncyProjectileItem {
     private static final String NAME = "Impulse Grenade";
     private static final Material MATERIAL = Material.HEART_OF_THE_SEA;
 
-    public ImpulseGrenade(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull Plugin plugin) {
-        super(id, NAME, MATERIAL, config, plugin);
+    public ImpulseGrenade(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull ProjectileEngine projectileEngine) {
+        super(id, NAME, MATERIAL, config, projectileEngine);
 
         setDisplayItem(MATERIAL, true);
         setExplosionSound(SoundEffects.IMPULSE_EXPLOSION);
@@ -34,7 +34,7 @@ public class ImpulseGrenade extends BouncyProjectileItem {
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
         World world = projectile.getWorld();
         Location location = projectile.getLocation();
         double radius = getRadius();
@@ -48,10 +48,19 @@ public class ImpulseGrenade extends BouncyProjectileItem {
 
             entity.setVelocity(direction.multiply(getPower()));
         }
+
+        // Knock other live grenades away
+        for (BouncyProjectile other : getProjectileEngine().getNearbyProjectiles(location, radius)) {
+            if (other == projectile) continue;
+
+            Vector direction = other.getLocation().subtract(location).toVector();
+            if (direction.lengthSquared() > 0) direction.normalize().multiply(getPower());
+            other.push(direction.getX(), direction.getY(), direction.getZ());
+        }
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
     }
 
 
@@ -2,19 +2,19 @@ package me.gimme.gimmetag.item.items;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BouncyProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import me.gimme.gimmetag.sfx.SoundEffects;
 import me.gimme.gimmetag.utils.ChatColorConversion;
 import org.bukkit.*;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.entity.Projectile;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.projectiles.ProjectileSource;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scoreboard.Team;
 import org.jetbrains.annotations.NotNull;
@@ -53,8 +53,9 @@ public class SmokeGrenade extends BouncyProjectileItem {
     private final int rgb;
     private final boolean useTeamColor;
 
-    public SmokeGrenade(@NotNull String id, @NotNull BouncyProjectileConfig config, int rgb, boolean useTeamColor, @NotNull Plugin plugin) {
-        super(id, NAME, MATERIAL, config, plugin);
+    public SmokeGrenade(@NotNull String id, @NotNull BouncyProjectileConfig config, int rgb, boolean useTeamColor,
+                        @NotNull ProjectileEngine projectileEngine, @NotNull Plugin plugin) {
+        super(id, NAME, MATERIAL, config, projectileEngine);
 
         this.plugin = plugin;
         this.particleRadius = getRadius() * PARTICLE_TO_EFFECT_RADIUS_RATIO;
@@ -71,9 +72,9 @@ public class SmokeGrenade extends BouncyProjectileItem {
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
         Location location = projectile.getLocation();
-        ProjectileSource shooter = projectile.getShooter();
+        LivingEntity shooter = projectile.getShooter();
 
         Color color = null;
         if (useTeamColor && (shooter instanceof Player)) color = getTeamColor((Player) shooter);
@@ -90,7 +91,7 @@ public class SmokeGrenade extends BouncyProjectileItem {
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
     }
 
     private void startSmoke(@NotNull Location location, @NotNull Color color) {
@@ -122,6 +123,12 @@ public class SmokeGrenade extends BouncyProjectileItem {
                 }
 
                 double radius = getRadius();
+
+                // The smoke puts out the trails of the projectiles in it
+                for (BouncyProjectile projectile : getProjectileEngine().getNearbyProjectiles(location, radius)) {
+                    projectile.setTrail(false);
+                }
+
                 Collection<Entity> nearbyLivingEntities = world.getNearbyEntities(
                         location.clone().add(0, -EYE_HEIGHT, 0), radius, radius * HEIGHT_TO_WIDTH_RATIO, radius,
                         e -> e.getType().isAlive()
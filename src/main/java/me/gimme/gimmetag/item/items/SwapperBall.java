@@ -2,6 +2,8 @@ package me.gimme.gimmetag.item.items;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BouncyProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import me.gimme.gimmetag.sfx.SoundEffects;
 import me.gimme.gimmetag.tag.TagManager;
 import org.bukkit.ChatColor;
@@ -11,7 +13,6 @@ import org.bukkit.Particle;
 import org.bukkit.entity.*;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
@@ -27,9 +28,9 @@ public class SwapperBall extends BouncyProjectileItem {
     private final boolean allowHunterSwap;
     private final TagManager tagManager;
 
-    public SwapperBall(@NotNull String id, @NotNull BouncyProjectileConfig config, boolean allowHunterSwap, @NotNull Plugin plugin,
-                       @NotNull TagManager tagManager) {
-        super(id, NAME, MATERIAL, config, plugin);
+    public SwapperBall(@NotNull String id, @NotNull BouncyProjectileConfig config, boolean allowHunterSwap,
+                       @NotNull ProjectileEngine projectileEngine, @NotNull TagManager tagManager) {
+        super(id, NAME, MATERIAL, config, projectileEngine);
 
         this.allowHunterSwap = allowHunterSwap;
         this.tagManager = tagManager;
@@ -44,17 +45,14 @@ public class SwapperBall extends BouncyProjectileItem {
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
         if (entity.getType() != EntityType.PLAYER) return; // Didn't hit a player
 
-        Entity shooter = (Entity) projectile.getShooter();
-        assert shooter != null;
-
-        swap(shooter, entity);
+        swap(projectile.getShooter(), entity);
     }
 
     private void swap(@NotNull Entity shooter, @NotNull Entity hit) {
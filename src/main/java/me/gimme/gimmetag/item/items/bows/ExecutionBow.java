@@ -2,12 +2,12 @@ package me.gimme.gimmetag.item.items.bows;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BowProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Projectile;
-import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
@@ -19,19 +19,19 @@ public class ExecutionBow extends BowProjectileItem {
 
     private static final String NAME = "Execution Bow";
 
-    public ExecutionBow(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull Plugin plugin) {
-        super(id, NAME, config, plugin);
+    public ExecutionBow(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull ProjectileEngine projectileEngine) {
+        super(id, NAME, config, projectileEngine);
 
         int percent = (int) Math.round(getPower() * 100);
         setInfo("Executes players at " + percent + "% health");
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
         AttributeInstance maxHealthAttribute = entity.getAttribute(Attribute.GENERIC_MAX_HEALTH);
         if (maxHealthAttribute == null) return;
 
@@ -2,11 +2,12 @@ package me.gimme.gimmetag.item.items.bows;
 
 import me.gimme.gimmetag.config.type.BouncyProjectileConfig;
 import me.gimme.gimmetag.item.BowProjectileItem;
+import me.gimme.gimmetag.item.entities.BouncyProjectile;
+import me.gimme.gimmetag.item.entities.ProjectileEngine;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Projectile;
 import org.bukkit.entity.Trident;
-import org.bukkit.plugin.Plugin;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 
@@ -20,19 +21,19 @@ public class PykesHook extends BowProjectileItem {
     private static final String NAME = "Pyke's Hook";
     private static final Class<? extends Projectile> PROJECTILE_CLASS = Trident.class;
 
-    public PykesHook(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull Plugin plugin) {
-        super(id, NAME, config, plugin);
+    public PykesHook(@NotNull String id, @NotNull BouncyProjectileConfig config, @NotNull ProjectileEngine projectileEngine) {
+        super(id, NAME, config, projectileEngine);
 
         setInfo("Pulls on hit");
         setProjectileClass(PROJECTILE_CLASS);
     }
 
     @Override
-    protected void onExplode(@NotNull Projectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
+    protected void onExplode(@NotNull BouncyProjectile projectile, @NotNull Collection<@NotNull Entity> livingEntities) {
     }
 
     @Override
-    protected void onHitEntity(@NotNull Projectile projectile, @NotNull LivingEntity entity) {
+    protected void onHitEntity(@NotNull BouncyProjectile projectile, @NotNull LivingEntity entity) {
         Vector velocity = projectile.getVelocity().clone();
         velocity.setY(0);
         velocity.normalize();
@@ -0,0 +1,104 @@
+package me.gimme.gimmetag.tag;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The roles of the players in the active round of tag, which are also their teams, keyed by their entity ids, to look
+ * them up in hot paths (like packet listeners and explosions) without any name or unique id lookups.
+ * <p>
+ * The roles are kept in an open addressing hash table of primitive ints. Roles change rarely compared to how often
+ * they are looked up, so the table is never modified, but rebuilt and published as a new immutable table whenever a
+ * role changes. Roles can therefore be looked up from any thread, while they are only set from one.
+ */
+public class RoleIndex {
+
+    private static final int NO_ROLE = 0;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Role[] ROLES = Role.values();
+
+    private final Map<Integer, Role> roleByEntityId = new HashMap<>();
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    /**
+     * Sets the role of the player with the specified entity id.
+     *
+     * @param entityId the entity id of the player
+     * @param role     the role of the player, or null if the player has no role
+     */
+    public void setRole(int entityId, @Nullable Role role) {
+        if (role != null) roleByEntityId.put(entityId, role);
+        else if (roleByEntityId.remove(entityId) == null) return;
+        rebuild();
+    }
+
+    /**
+     * Forgets all roles.
+     */
+    public void clear() {
+        roleByEntityId.clear();
+        rebuild();
+    }
+
+    /**
+     * Returns the role of the player with the specified entity id.
+     * <p>
+     * This can be called from any thread.
+     *
+     * @param entityId the entity id of the player to get the role of
+     * @return the role of the player, or null if the entity has no role
+     */
+    @Nullable
+    public Role getRole(int entityId) {
+        return table.getRole(entityId);
+    }
+
+    private void rebuild() {
+        // Keep the hash table at most half full
+        Table table = new Table(Integer.highestOneBit(Math.max(INITIAL_CAPACITY, roleByEntityId.size() * 2) * 2 - 1));
+        for (Map.Entry<Integer, Role> entry : roleByEntityId.entrySet()) {
+            table.put(entry.getKey(), entry.getValue());
+        }
+        this.table = table;
+    }
+
+    private static int hash(int entityId) {
+        int h = entityId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+
+    /**
+     * A hash table of roles, which is only modified before it is published.
+     */
+    private static class Table {
+        private final int[] keys;
+        private final int[] roles; // Ordinal + 1 of the role of the entity in the slot, or 0 if free
+
+        private Table(int capacity) {
+            this.keys = new int[capacity];
+            this.roles = new int[capacity];
+        }
+
+        private void put(int entityId, @NotNull Role role) {
+            int mask = roles.length - 1;
+            int slot = hash(entityId) & mask;
+            while (roles[slot] != NO_ROLE) slot = (slot + 1) & mask;
+
+            keys[slot] = entityId;
+            roles[slot] = role.ordinal() + 1;
+        }
+
+        @Nullable
+        private Role getRole(int entityId) {
+            int mask = roles.length - 1;
+            for (int slot = hash(entityId) & mask; roles[slot] != NO_ROLE; slot = (slot + 1) & mask) {
+                if (keys[slot] == entityId) return ROLES[roles[slot] - 1];
+            }
+            return null;
+        }
+    }
+}
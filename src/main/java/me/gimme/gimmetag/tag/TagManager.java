@@ -49,6 +49,7 @@ public class TagManager implements Listener {
 
     // Active round
     private final Map<UUID, @Nullable Role> roleByPlayer = new HashMap<>();
+    private final RoleIndex roleByEntityId = new RoleIndex(); // Roles of the online players by entity id
     private final Set<UUID> hunters = new HashSet<>(); // Current hunters
     private final Set<UUID> runners = new HashSet<>(); // Current runners
     private final Map<UUID, BukkitRunnable> sleepingPlayers = new HashMap<>(); // For new hunters
@@ -304,6 +305,19 @@ public class TagManager implements Listener {
         return roleByPlayer.get(player.getUniqueId());
     }
 
+    /**
+     * Returns the role of the online player with the specified entity id, without looking up the player.
+     * <p>
+     * This can be called from any thread.
+     *
+     * @param entityId the entity id of the player to get the role of
+     * @return the role of the player, or null if the entity is not a player with a role
+     */
+    @Nullable
+    public Role getRole(int entityId) {
+        return roleByEntityId.getRole(entityId);
+    }
+
     /**
      * Makes the specified hunter tag the specified runner.
      * <p>
@@ -402,10 +416,12 @@ public class TagManager implements Listener {
         if (role != null) {
             tagScoreboard.setTeam(player, role);
             roleByPlayer.put(uuid, role);
+            roleByEntityId.setRole(player.getEntityId(), role);
             storeGameplayState(player);
             applyStartingPlayerState(player, role);
         } else {
             roleByPlayer.remove(uuid);
+            roleByEntityId.setRole(player.getEntityId(), null);
             restoreGameplayState(player);
         }
 
@@ -487,6 +503,7 @@ public class TagManager implements Listener {
 
         // Clear any offline players left
         roleByPlayer.clear();
+        roleByEntityId.clear();
         hunters.clear();
         runners.clear();
     }
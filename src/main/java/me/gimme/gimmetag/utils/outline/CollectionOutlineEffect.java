@@ -1,6 +1,7 @@
 package me.gimme.gimmetag.utils.outline;
 
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,9 +31,7 @@ public class CollectionOutlineEffect extends OutlineEffect {
      * @param targets   the target entities to display outlines of, or null for no targets
      */
     public CollectionOutlineEffect(@NotNull Plugin plugin, @NotNull Entity povEntity, @Nullable Collection<? extends Entity> targets) {
-        super(plugin, null);
-
-        setOutlineCondition((p, entityId) -> povEntity.getUniqueId().equals(p.getUniqueId()) && activeOutlines.containsKey(entityId));
+        super(plugin, povEntity);
         setTargets(targets);
     }
 
@@ -51,15 +50,19 @@ public class CollectionOutlineEffect extends OutlineEffect {
                 if (!activeOutlines.containsKey(targetId)) {
                     newTargets.add(target);
                     activeOutlines.put(targetId, target);
+                    addTarget(targetId);
                 } else {
                     removedTargets.remove(targetId);
                 }
             }
         }
         activeOutlines.keySet().removeAll(removedTargets.keySet());
+        removedTargets.keySet().forEach(this::removeTarget);
 
-        OutlineEffect.refresh(newTargets);
-        OutlineEffect.refresh(removedTargets.values());
+        Player viewer = getViewer();
+        if (viewer == null) return;
+        OutlineEffect.refresh(newTargets, viewer);
+        OutlineEffect.refresh(removedTargets.values(), viewer);
     }
 
     /**
@@ -81,7 +84,8 @@ public class CollectionOutlineEffect extends OutlineEffect {
     @Override
     public boolean hide() {
         boolean b = super.hide();
-        refresh(activeOutlines.values());
+        Player viewer = getViewer();
+        if (viewer != null) refresh(activeOutlines.values(), viewer);
         return b;
     }
 }
@@ -0,0 +1,257 @@
+package me.gimme.gimmetag.utils.outline;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Keeps a model of the outline color teams that each player's client has, and which entries they hold, so that only
+ * the changes are sent to the clients.
+ * <p>
+ * The wanted color of each entity is kept per player, apart from the teams that the client has. A color team is only
+ * created once per client, and an entry is only added when it is not already in the team of the color. An entry is
+ * taken out of its team when the entity is destroyed for the client, so that the teams do not keep growing, and added
+ * back if the entity is spawned for the client again (like after leaving and reentering the tracking range). The
+ * wanted color is only forgotten when the entity is removed from the world, or when removed explicitly for entities
+ * that only exist on the clients.
+ * <p>
+ * The clients drop all their teams when they join or respawn (which includes changing worlds), and the model of the
+ * client is reset when either happens.
+ */
+final class OutlineColorTeams {
+    private static final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+    private static final int MIN_PRUNE_SIZE = 64; // Amount of wanted colors of a player before pruning removed entities
+
+    private static final Map<UUID, ViewerTeams> teamsByViewer = new HashMap<>();
+    private static boolean listening;
+
+    private OutlineColorTeams() {
+    }
+
+    /**
+     * Sets the outline color of the specified entities for the specified player, sending only the changes.
+     *
+     * @param color      the color to set for the outline
+     * @param viewer     the player that will see the color change
+     * @param entityIds  the entity ids of the entities
+     * @param entries    the scoreboard team entries of the entities, in the same order as the entity ids
+     * @param clientOnly if the entities only exist on the clients, and have to be removed with
+     *                   {@link #removeColor(Player, int)}
+     */
+    static void setColor(@NotNull ChatColor color, @NotNull Player viewer, @NotNull int[] entityIds,
+                         @NotNull String[] entries, boolean clientOnly) {
+        listen();
+
+        String teamName = getTeamName(color);
+        ViewerTeams teams = teamsByViewer.computeIfAbsent(viewer.getUniqueId(), k -> new ViewerTeams());
+        if (teams.colorByEntityId.size() >= teams.pruneSize) teams.prune(viewer);
+
+        List<String> addedEntries = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            teams.colorByEntityId.put(entityIds[i], new WantedColor(entries[i], teamName, color, clientOnly));
+            // An entry added to a team is moved out of its previous team by the client
+            if (!teamName.equals(teams.teamByEntry.put(entries[i], teamName))) addedEntries.add(entries[i]);
+        }
+        addEntries(viewer, teams, teamName, color, addedEntries);
+    }
+
+    /**
+     * Forgets the outline color of the client-only entity with the specified entity id for the specified player, and
+     * takes it out of its color team.
+     *
+     * @param viewer   the player that sees the entity
+     * @param entityId the entity id of the entity
+     */
+    static void removeColor(@NotNull Player viewer, int entityId) {
+        ViewerTeams teams = teamsByViewer.get(viewer.getUniqueId());
+        if (teams == null) return;
+
+        WantedColor color = teams.colorByEntityId.remove(entityId);
+        if (color != null && teams.teamByEntry.remove(color.entry, color.teamName)) {
+            sendEntries(viewer, PlayServerScoreboardTeamWrapper.Mode.ENTRIES_REMOVED, color.teamName,
+                    Collections.singletonList(color.entry));
+        }
+    }
+
+    /**
+     * Adds back the entry of the entity with the specified entity id to its color team, if the entity has a
+     * wanted color that the client has not.
+     *
+     * @param viewer   the player that the entity is spawned for
+     * @param entityId the entity id of the spawned entity
+     */
+    private static void onSpawn(@NotNull Player viewer, int entityId) {
+        ViewerTeams teams = teamsByViewer.get(viewer.getUniqueId());
+        if (teams == null) return;
+
+        WantedColor color = teams.colorByEntityId.get(entityId);
+        if (color == null || color.teamName.equals(teams.teamByEntry.put(color.entry, color.teamName))) return;
+        addEntries(viewer, teams, color.teamName, color.color, Collections.singletonList(color.entry));
+    }
+
+    /**
+     * Takes the entries of the entities with the specified entity ids out of the color teams of the specified player,
+     * and forgets the wanted colors of the entities that have been removed from the world.
+     *
+     * @param viewer    the player that the entities were destroyed for
+     * @param entityIds the entity ids of the destroyed entities
+     */
+    private static void onDestroy(@NotNull Player viewer, @NotNull int[] entityIds) {
+        ViewerTeams teams = teamsByViewer.get(viewer.getUniqueId());
+        if (teams == null) return;
+
+        Map<String, List<String>> removedEntriesByTeam = null;
+        for (int entityId : entityIds) {
+            WantedColor color = teams.colorByEntityId.get(entityId);
+            if (color == null) continue;
+            if (!color.clientOnly && isRemoved(viewer, entityId)) teams.colorByEntityId.remove(entityId);
+            if (!teams.teamByEntry.remove(color.entry, color.teamName)) continue;
+
+            if (removedEntriesByTeam == null) removedEntriesByTeam = new HashMap<>();
+            removedEntriesByTeam.computeIfAbsent(color.teamName, k -> new ArrayList<>()).add(color.entry);
+        }
+        if (removedEntriesByTeam == null) return;
+
+        for (Map.Entry<String, List<String>> removedEntries : removedEntriesByTeam.entrySet()) {
+            sendEntries(viewer, PlayServerScoreboardTeamWrapper.Mode.ENTRIES_REMOVED, removedEntries.getKey(),
+                    removedEntries.getValue());
+        }
+    }
+
+    private static void addEntries(@NotNull Player viewer, @NotNull ViewerTeams teams, @NotNull String teamName,
+                                   @NotNull ChatColor color, @NotNull List<String> entries) {
+        if (entries.isEmpty()) return;
+
+        if (teams.createdTeams.add(teamName)) {
+            PlayServerScoreboardTeamWrapper createTeamPacket = new PlayServerScoreboardTeamWrapper(PlayServerScoreboardTeamWrapper.Mode.TEAM_CREATED);
+            createTeamPacket.setName(teamName);
+            createTeamPacket.setColor(color);
+            createTeamPacket.send(viewer);
+        }
+
+        sendEntries(viewer, PlayServerScoreboardTeamWrapper.Mode.ENTRIES_ADDED, teamName, entries);
+    }
+
+    private static void sendEntries(@NotNull Player viewer, @NotNull PlayServerScoreboardTeamWrapper.Mode mode,
+                                    @NotNull String teamName, @NotNull List<String> entries) {
+        PlayServerScoreboardTeamWrapper entriesPacket = new PlayServerScoreboardTeamWrapper(mode);
+        entriesPacket.setName(teamName);
+        entriesPacket.setEntries(entries);
+        entriesPacket.send(viewer);
+    }
+
+    /**
+     * Returns if the entity with the specified entity id is no longer in the world of the specified player.
+     */
+    private static boolean isRemoved(@NotNull Player viewer, int entityId) {
+        Entity entity = protocolManager.getEntityFromID(viewer.getWorld(), entityId);
+        return entity == null || !entity.isValid();
+    }
+
+    /**
+     * Starts listening to the packets that change the color teams of the clients, if not already.
+     * <p>
+     * These packets are sent from the main thread, so the listener is synchronous. Any sent from other threads (by
+     * other plugins) are ignored.
+     */
+    private static void listen() {
+        if (listening) return;
+        listening = true;
+
+        protocolManager.addPacketListener(new PacketAdapter(JavaPlugin.getProvidingPlugin(OutlineColorTeams.class),
+                PacketType.Play.Server.SPAWN_ENTITY, PacketType.Play.Server.SPAWN_ENTITY_LIVING,
+                PacketType.Play.Server.NAMED_ENTITY_SPAWN, PacketType.Play.Server.ENTITY_DESTROY,
+                PacketType.Play.Server.RESPAWN, PacketType.Play.Server.LOGIN) {
+            @Override
+            public void onPacketSending(PacketEvent event) {
+                if (!Bukkit.isPrimaryThread()) return;
+
+                Player player = event.getPlayer();
+                PacketType packetType = event.getPacketType();
+
+                if (packetType.equals(PacketType.Play.Server.ENTITY_DESTROY)) {
+                    onDestroy(player, event.getPacket().getIntegerArrays().read(0));
+                } else if (packetType.equals(PacketType.Play.Server.RESPAWN)) {
+                    ViewerTeams teams = teamsByViewer.get(player.getUniqueId());
+                    if (teams != null) teams.resetClient();
+                } else if (packetType.equals(PacketType.Play.Server.LOGIN)) {
+                    teamsByViewer.remove(player.getUniqueId());
+                    // Forget the players that have left
+                    teamsByViewer.keySet().removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+                } else {
+                    onSpawn(player, event.getPacket().getIntegers().read(0));
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the team name to use for the specified color.
+     * <p>
+     * This is used to keep the names at max 16 characters and avoid conflicts of already used team names.
+     *
+     * @param color the color to get the team name of
+     * @return the team name to use for the specified color
+     */
+    @NotNull
+    private static String getTeamName(@NotNull ChatColor color) {
+        String name = "_" + color.name();
+        // Max team name length is 16 or the client crashes.
+        if (name.length() > 16) name = name.subSequence(0, 16).toString();
+        return name;
+    }
+
+
+    /**
+     * The wanted colors of the entities seen by a player, and the color teams that the client of the player has.
+     */
+    private static class ViewerTeams {
+        private final Map<Integer, WantedColor> colorByEntityId = new HashMap<>();
+        private final Set<String> createdTeams = new HashSet<>();
+        private final Map<String, String> teamByEntry = new HashMap<>(); // Entries in the teams of the client
+        private int pruneSize = MIN_PRUNE_SIZE;
+
+        /**
+         * Forgets the client teams, keeping the wanted colors to add back as the entities are spawned again.
+         */
+        private void resetClient() {
+            createdTeams.clear();
+            teamByEntry.clear();
+        }
+
+        /**
+         * Forgets the wanted colors of the entities that were removed from the world while not tracked by the player.
+         */
+        private void prune(@NotNull Player viewer) {
+            colorByEntityId.entrySet().removeIf(e -> !e.getValue().clientOnly && isRemoved(viewer, e.getKey()));
+            pruneSize = Math.max(MIN_PRUNE_SIZE, colorByEntityId.size() * 2);
+        }
+    }
+
+    /**
+     * The color that an entity should have for a player.
+     */
+    private static class WantedColor {
+        private final String entry;
+        private final String teamName;
+        private final ChatColor color;
+        private final boolean clientOnly;
+
+        private WantedColor(@NotNull String entry, @NotNull String teamName, @NotNull ChatColor color, boolean clientOnly) {
+            this.entry = entry;
+            this.teamName = teamName;
+            this.color = color;
+            this.clientOnly = clientOnly;
+        }
+    }
+}
@@ -1,13 +1,7 @@
 package me.gimme.gimmetag.utils.outline;
 
-import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
-import com.comphenix.protocol.events.PacketAdapter;
-import com.comphenix.protocol.events.PacketEvent;
-import com.comphenix.protocol.events.PacketListener;
-import com.comphenix.protocol.wrappers.WrappedDataWatcher;
-import com.comphenix.protocol.wrappers.WrappedWatchableObject;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Entity;
@@ -19,32 +13,38 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Creates an outline effect around targets which is only visible to certain players.
+ * <p>
+ * The outline is either shown of specific target entities to a single viewer, or decided by a condition for every
+ * entity and player. All shown effects are applied through the {@link OutlineRegistry}.
  */
 public class OutlineEffect {
     private static final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
-    private final PacketListener packetListener;
+
+    private final Plugin plugin;
+    @Nullable
+    private final UUID viewer;
+    private final Set<Integer> targets = new HashSet<>();
 
     private boolean isShown;
     @Nullable
-    private ShowOutlineCondition condition;
+    private volatile ShowOutlineCondition condition;
 
     /**
      * Creates an outline effect around targets that is only visible to the specified entity.
      * <p>
      * It's an entity for compatibility reasons, but an outline effect only makes sense to be displayed to players.
+     * <p>
+     * The targets are added with {@link #addTarget(int)}.
      *
-     * @param plugin          the plugin to register the effect with
-     * @param povEntity       the entity that will be the only one to see this outline effect
-     * @param showForEntityId a predicate deciding if the entity with the given entityId should have an outline
+     * @param plugin    the plugin to register the effect with
+     * @param povEntity the entity that will be the only one to see this outline effect
      * @return the created outline effect
      */
-    public static OutlineEffect personalEffect(@NotNull Plugin plugin, @NotNull Entity povEntity, @NotNull Predicate<Integer> showForEntityId) {
-        return new OutlineEffect(plugin, ((p, entityId) -> povEntity.getUniqueId().equals(p.getUniqueId()) && showForEntityId.test(entityId)));
+    public static OutlineEffect personalEffect(@NotNull Plugin plugin, @NotNull Entity povEntity) {
+        return new OutlineEffect(plugin, povEntity);
     }
 
     /**
@@ -55,35 +55,20 @@ public class OutlineEffect {
      *                  to the given player
      */
     public OutlineEffect(@NotNull Plugin plugin, @Nullable ShowOutlineCondition condition) {
+        this.plugin = plugin;
+        this.viewer = null;
         setOutlineCondition(condition);
+    }
 
-        this.packetListener = new PacketAdapter(plugin, PacketType.Play.Server.ENTITY_METADATA, PacketType.Play.Server.NAMED_ENTITY_SPAWN) {
-            @Override
-            public void onPacketSending(PacketEvent event) {
-                Player player = event.getPlayer();
-                int entityId = event.getPacket().getIntegers().read(0);
-                PacketType packetType = event.getPacketType();
-
-                if (getCondition() == null || !getCondition().showOutline(player, entityId)) return;
-
-                if (packetType.equals(PacketType.Play.Server.ENTITY_METADATA)) {
-                    List<WrappedWatchableObject> watchableObjects = event.getPacket().getWatchableCollectionModifier().read(0);
-                    for (WrappedWatchableObject watchableObject : watchableObjects) {
-                        if (watchableObject.getIndex() != 0) continue;
-                        byte b = (byte) watchableObject.getValue();
-                        b |= 0b01000000;
-                        watchableObject.setValue(b);
-                    }
-                } else if (packetType.equals(PacketType.Play.Server.NAMED_ENTITY_SPAWN)) {
-                    WrappedDataWatcher dataWatcher = event.getPacket().getDataWatcherModifier().read(0);
-                    if (dataWatcher.hasIndex(0)) {
-                        byte b = dataWatcher.getByte(0);
-                        b |= 0b01000000;
-                        dataWatcher.setObject(0, b);
-                    }
-                }
-            }
-        };
+    /**
+     * Creates an outline effect around target entities that is only visible to the specified entity.
+     *
+     * @param plugin    the plugin to register the effect with
+     * @param povEntity the entity that will be the only one to see this outline effect
+     */
+    protected OutlineEffect(@NotNull Plugin plugin, @NotNull Entity povEntity) {
+        this.plugin = plugin;
+        this.viewer = povEntity.getUniqueId();
     }
 
     /**
@@ -94,7 +79,14 @@ public class OutlineEffect {
     public boolean show() {
         if (isShown) return false;
         isShown = true;
-        protocolManager.addPacketListener(packetListener);
+
+        if (viewer != null) {
+            for (int entityId : targets) {
+                OutlineRegistry.addTarget(plugin, viewer, entityId);
+            }
+        } else {
+            OutlineRegistry.addConditionalEffect(plugin, this);
+        }
         return true;
     }
 
@@ -106,7 +98,14 @@ public class OutlineEffect {
     public boolean hide() {
         if (!isShown) return false;
         isShown = false;
-        protocolManager.removePacketListener(packetListener);
+
+        if (viewer != null) {
+            for (int entityId : targets) {
+                OutlineRegistry.removeTarget(viewer, entityId);
+            }
+        } else {
+            OutlineRegistry.removeConditionalEffect(this);
+        }
         return true;
     }
 
@@ -119,6 +118,37 @@ public class OutlineEffect {
         return isShown;
     }
 
+    /**
+     * Adds the entity with the specified entity id to the targets of this personal outline effect.
+     *
+     * @param entityId the entity id of the entity to show an outline of
+     */
+    public void addTarget(int entityId) {
+        if (viewer == null) throw new IllegalStateException("Only personal outline effects have targets");
+        if (targets.add(entityId) && isShown) OutlineRegistry.addTarget(plugin, viewer, entityId);
+    }
+
+    /**
+     * Removes the entity with the specified entity id from the targets of this personal outline effect.
+     *
+     * @param entityId the entity id of the entity to stop showing an outline of
+     */
+    public void removeTarget(int entityId) {
+        if (viewer == null) throw new IllegalStateException("Only personal outline effects have targets");
+        if (targets.remove(entityId) && isShown) OutlineRegistry.removeTarget(viewer, entityId);
+    }
+
+    /**
+     * Returns the player that this personal outline effect is visible to, or null if not online or if this effect is
+     * not personal.
+     *
+     * @return the player that this outline effect is visible to, or null if none
+     */
+    @Nullable
+    protected Player getViewer() {
+        return viewer != null ? Bukkit.getPlayer(viewer) : null;
+    }
+
     /**
      * Sets the condition that decides if the entity with the given entityId should have an outline displayed to the
      * given player, or null if no outline condition currently.
@@ -131,15 +161,17 @@ public class OutlineEffect {
     }
 
     /**
-     * Returns the condition that decides if the entity with the given entityId should have an outline displayed to the
-     * given player, or null if no outline condition currently.
+     * Returns if the condition of this effect decides that an outline should be shown of the entity with the specified
+     * entityId to the specified player.
+     * <p>
+     * This is called asynchronously from the packet listener.
      *
-     * @return the condition that decides if the outline should be displayed between the given entities, or null if no
-     * outline condition currently
+     * @param player   the player to see the outline
+     * @param entityId the entityId of the entity to show the outline of
+     * @return if an outline should be shown of the entity to the specified player
      */
-    @Nullable
-    private ShowOutlineCondition getCondition() {
-        return condition;
+    boolean showOutline(@NotNull Player player, int entityId) {
+        return condition != null && condition.showOutline(player, entityId);
     }
 
 
@@ -162,23 +194,49 @@ public class OutlineEffect {
     }
 
     /**
-     * Refreshes the outline status of the specified entity.
+     * Refreshes the outline status of the specified entity for all players that can see it.
      * <p>
-     * This forces the server to send new metadata packets for that entity, which can then be intercepted and have the
-     * outline effect added.
+     * This sends each of them a metadata packet of only the flags of the entity, with their outline already applied.
      *
      * @param entity the entity to refresh
      */
     public static void refresh(@NotNull Entity entity) {
-        boolean isGlowing = entity.isGlowing();
-        entity.setGlowing(!isGlowing);
-        entity.setGlowing(isGlowing);
+        for (Player viewer : protocolManager.getEntityTrackers(entity)) {
+            refresh(entity, viewer);
+        }
+    }
+
+    /**
+     * Refreshes the outline status of the specified entities for the specified player.
+     *
+     * @param entities the entities to refresh
+     * @param viewer   the player to refresh the entities for
+     */
+    public static void refresh(@NotNull Iterable<? extends Entity> entities, @NotNull Player viewer) {
+        for (Entity entity : entities) {
+            refresh(entity, viewer);
+        }
+    }
+
+    /**
+     * Refreshes the outline status of the specified entity for the specified player.
+     * <p>
+     * This sends only the player a metadata packet of only the flags of the entity, with the outline already applied,
+     * instead of making the server resend the metadata to every player.
+     *
+     * @param entity the entity to refresh
+     * @param viewer the player to refresh the entity for
+     */
+    public static void refresh(@NotNull Entity entity, @NotNull Player viewer) {
+        OutlineRegistry.sendFlags(entity, viewer);
     }
 
     /**
      * Sets the outline color of the given entities for the given player. If the color is null, the given player's team
      * color will be used instead.
      * <p>
+     * Only the changes are sent to the player, and the color is kept until the entities are removed from the world.
+     * <p>
      * Note that any entity that is in a scoreboard team will use that team's color above all else.
      *
      * @param color    the color to set for the outline, or null to use the given player's team color
@@ -186,80 +244,105 @@ public class OutlineEffect {
      * @param entities the entities to set the outline color of
      */
     public static void setColor(@Nullable ChatColor color, @NotNull Player player, @NotNull Entity... entities) {
-        if (color == null) {
-            Team playerTeam = player.getScoreboard().getEntryTeam(player.getName());
-            if (playerTeam != null) color = playerTeam.getColor();
-            if (color == null) color = ChatColor.WHITE; // Default outline color
-        }
+        OutlineColorTeams.setColor(getColorOrTeamColor(color, player), player, getEntityIds(entities), getEntries(entities),
+                false);
+    }
 
-        setColor(color, Collections.singletonList(player), entities);
+    /**
+     * Sets the outline color of the non-player entity with the given entity id and unique id for the given player. If
+     * the color is null, the given player's team color will be used instead.
+     * <p>
+     * This is useful for entities that only exist on the clients, and therefore have no {@link Entity} object.
+     *
+     * @param color      the color to set for the outline, or null to use the given player's team color
+     * @param player     the player that will see the color change
+     * @param entityId   the entity id of the non-player entity to set the outline color of
+     * @param entityUuid the unique id of the non-player entity to set the outline color of
+     */
+    public static void setColor(@Nullable ChatColor color, @NotNull Player player, int entityId, @NotNull UUID entityUuid) {
+        OutlineColorTeams.setColor(getColorOrTeamColor(color, player), player, new int[]{entityId},
+                new String[]{entityUuid.toString()}, true);
     }
 
     /**
-     * Sets the outline color of the given entities for all online players.
+     * Removes the outline color of the non-player entity with the given entity id for the given player, set with
+     * {@link #setColor(ChatColor, Player, int, UUID)}.
      * <p>
-     * Note that any entity that is in a scoreboard team will use that team's color above all else.
+     * This has to be called when an entity that only exists on the clients is removed, since the server never removes
+     * it.
      *
-     * @param color    the color to set for the outline
-     * @param entities the entities to set the outline color of
+     * @param player   the player that saw the color
+     * @param entityId the entity id of the non-player entity to remove the outline color of
      */
-    public static void broadcastColor(@NotNull ChatColor color, @NotNull Entity... entities) {
-        setColor(color, (Iterable<Player>) null, entities);
+    public static void removeColor(@NotNull Player player, int entityId) {
+        OutlineColorTeams.removeColor(player, entityId);
     }
 
     /**
-     * Sets the outline color of the given entities for the given players, or null for all online players.
+     * Sets the outline color of the given entities for all online players.
      * <p>
      * Note that any entity that is in a scoreboard team will use that team's color above all else.
      *
      * @param color    the color to set for the outline
-     * @param players  the players that will see the color change, or null for all online players
      * @param entities the entities to set the outline color of
      */
-    private static void setColor(@NotNull ChatColor color, @Nullable Iterable<Player> players, @NotNull Entity... entities) {
-        String teamName = getTeamName(color);
+    public static void broadcastColor(@NotNull ChatColor color, @NotNull Entity... entities) {
+        int[] entityIds = getEntityIds(entities);
+        String[] entries = getEntries(entities);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            OutlineColorTeams.setColor(color, player, entityIds, entries, false);
+        }
+    }
 
-        PlayServerScoreboardTeamWrapper createTeamPacket = new PlayServerScoreboardTeamWrapper(PlayServerScoreboardTeamWrapper.Mode.TEAM_CREATED);
-        createTeamPacket.setName(teamName);
-        createTeamPacket.setColor(color);
+    /**
+     * Returns the given color, or the given player's team color if null.
+     *
+     * @param color  the color to return if not null
+     * @param player the player to get the team color of
+     * @return the given color, or the given player's team color if null
+     */
+    @NotNull
+    private static ChatColor getColorOrTeamColor(@Nullable ChatColor color, @NotNull Player player) {
+        if (color == null) {
+            Team playerTeam = player.getScoreboard().getEntryTeam(player.getName());
+            if (playerTeam != null) color = playerTeam.getColor();
+            if (color == null) color = ChatColor.WHITE; // Default outline color
+        }
+        return color;
+    }
 
-        PlayServerScoreboardTeamWrapper addEntitiesPacket = new PlayServerScoreboardTeamWrapper(PlayServerScoreboardTeamWrapper.Mode.ENTRIES_ADDED);
-        addEntitiesPacket.setName(teamName);
-        addEntitiesPacket.setEntries(Arrays.stream(entities)
+    /**
+     * Returns the scoreboard team entries of the given entities, which is the name for players and the unique id for
+     * other entities.
+     *
+     * @param entities the entities to get the team entries of
+     * @return the scoreboard team entries of the given entities
+     */
+    @NotNull
+    private static String[] getEntries(@NotNull Entity... entities) {
+        return Arrays.stream(entities)
                 .map(e -> e.getType() == EntityType.PLAYER ? e.getName() : e.getUniqueId().toString())
-                .collect(Collectors.toList()));
-
-        if (players != null) {
-            for (Player player : Objects.requireNonNull(players)) {
-                createTeamPacket.send(player);
-                addEntitiesPacket.send(player);
-            }
-        } else {
-            createTeamPacket.broadcast();
-            addEntitiesPacket.broadcast();
-        }
+                .toArray(String[]::new);
     }
 
     /**
-     * Returns the team name to use for the specified color.
-     * <p>
-     * This is used to keep the names at max 16 characters and avoid conflicts of already used team names.
+     * Returns the entity ids of the given entities.
      *
-     * @param color the color to get the team name of
-     * @return the team name to use for the specified color
+     * @param entities the entities to get the entity ids of
+     * @return the entity ids of the given entities
      */
     @NotNull
-    private static String getTeamName(@NotNull ChatColor color) {
-        String name = "_" + color.name();
-        // Max team name length is 16 or the client crashes.
-        if (name.length() > 16) name = name.subSequence(0, 16).toString();
-        return name;
+    private static int[] getEntityIds(@NotNull Entity... entities) {
+        return Arrays.stream(entities).mapToInt(Entity::getEntityId).toArray();
     }
 
 
     public interface ShowOutlineCondition {
         /**
          * Returns if an outline should be shown of the entity with the specified entityId to the specified player.
+         * <p>
+         * This is called asynchronously from the packet listener, so it should only read state that is safe to read
+         * from other threads.
          *
          * @param player   the player to see the outline
          * @param entityId the entityId of the entity to show the outline of
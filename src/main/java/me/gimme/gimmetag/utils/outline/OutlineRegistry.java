@@ -0,0 +1,293 @@
+package me.gimme.gimmetag.utils.outline;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.events.PacketListener;
+import com.comphenix.protocol.wrappers.WrappedDataWatcher;
+import com.comphenix.protocol.wrappers.WrappedWatchableObject;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of all shown outline effects, and adds the outlines to the entity metadata sent to the players through a
+ * single packet listener.
+ * <p>
+ * The entities that are outlined for a specific viewer are kept in a primitive int set per viewer, so that the outline
+ * of a metadata packet is found with one lookup, no matter how many effects are shown. Effects with a condition are
+ * tested after that, one by one.
+ * <p>
+ * The packet listener is only registered while any effect is shown, and may run on the network threads. Effects are
+ * only shown, hidden and changed from the main thread, and the listener only reads immutable snapshots of the outlined
+ * entities of each viewer, published whenever they change, so it never needs to lock.
+ */
+final class OutlineRegistry {
+    private static final ProtocolManager protocolManager = ProtocolLibrary.getProtocolManager();
+    private static final int FLAGS_INDEX = 0;
+    private static final byte GLOWING_FLAG = 0b01000000;
+
+    private static final Map<UUID, EntityIdCounts> outlinedByViewer = new HashMap<>();
+    private static final Map<UUID, EntityIdCounts> outlinedSnapshotByViewer = new ConcurrentHashMap<>(); // Never modified
+    private static final List<OutlineEffect> conditionalEffects = new CopyOnWriteArrayList<>();
+    private static int registrations;
+    @Nullable
+    private static PacketListener packetListener;
+
+    private OutlineRegistry() {
+    }
+
+    /**
+     * Outlines the entity with the specified entity id for the specified viewer, until removed as many times as it
+     * has been added.
+     *
+     * @param plugin   the plugin to register the packet listener with
+     * @param viewer   the unique id of the player to see the outline
+     * @param entityId the entity id of the entity to outline
+     */
+    static void addTarget(@NotNull Plugin plugin, @NotNull UUID viewer, int entityId) {
+        EntityIdCounts outlined = outlinedByViewer.computeIfAbsent(viewer, k -> new EntityIdCounts());
+        outlined.add(entityId);
+        outlinedSnapshotByViewer.put(viewer, outlined.copy());
+        register(plugin);
+    }
+
+    /**
+     * Removes an outline added with {@link #addTarget(Plugin, UUID, int)}.
+     *
+     * @param viewer   the unique id of the player that sees the outline
+     * @param entityId the entity id of the outlined entity
+     */
+    static void removeTarget(@NotNull UUID viewer, int entityId) {
+        EntityIdCounts outlined = outlinedByViewer.get(viewer);
+        if (outlined == null || !outlined.remove(entityId)) return;
+
+        if (outlined.isEmpty()) {
+            outlinedByViewer.remove(viewer);
+            outlinedSnapshotByViewer.remove(viewer);
+        } else {
+            outlinedSnapshotByViewer.put(viewer, outlined.copy());
+        }
+        unregister();
+    }
+
+    /**
+     * Starts testing the condition of the specified effect for every metadata packet.
+     *
+     * @param plugin the plugin to register the packet listener with
+     * @param effect the effect with a condition to start testing
+     */
+    static void addConditionalEffect(@NotNull Plugin plugin, @NotNull OutlineEffect effect) {
+        conditionalEffects.add(effect);
+        register(plugin);
+    }
+
+    /**
+     * Stops testing the condition of the specified effect.
+     *
+     * @param effect the effect with a condition to stop testing
+     */
+    static void removeConditionalEffect(@NotNull OutlineEffect effect) {
+        if (conditionalEffects.remove(effect)) unregister();
+    }
+
+    /**
+     * Sends the specified viewer a metadata packet of the specified entity with only its flags, with the outline bit
+     * already set for the viewer.
+     * <p>
+     * The packet is not passed through the packet listeners, since the outline is already applied.
+     *
+     * @param entity the entity to send the flags of
+     * @param viewer the player to send the flags to
+     */
+    static void sendFlags(@NotNull Entity entity, @NotNull Player viewer) {
+        int entityId = entity.getEntityId();
+        byte flags = WrappedDataWatcher.getEntityWatcher(entity).getByte(FLAGS_INDEX);
+        if (isOutlined(viewer, entityId)) flags |= GLOWING_FLAG;
+
+        PacketContainer metadataPacket = protocolManager.createPacket(PacketType.Play.Server.ENTITY_METADATA);
+        metadataPacket.getIntegers().write(0, entityId);
+        metadataPacket.getWatchableCollectionModifier().write(0, Collections.singletonList(new WrappedWatchableObject(
+                new WrappedDataWatcher.WrappedDataWatcherObject(FLAGS_INDEX, WrappedDataWatcher.Registry.get(Byte.class)),
+                flags)));
+
+        try {
+            protocolManager.sendServerPacket(viewer, metadataPacket, false);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Cannot send packet", e);
+        }
+    }
+
+    /**
+     * Returns if the entity with the specified entity id should be outlined for the specified player.
+     * <p>
+     * This can be called from any thread.
+     *
+     * @param player   the player that the entity metadata is sent to
+     * @param entityId the entity id of the entity
+     * @return if the entity should be outlined for the player
+     */
+    private static boolean isOutlined(@NotNull Player player, int entityId) {
+        EntityIdCounts outlined = outlinedSnapshotByViewer.get(player.getUniqueId());
+        if (outlined != null && outlined.contains(entityId)) return true;
+
+        for (OutlineEffect effect : conditionalEffects) {
+            if (effect.showOutline(player, entityId)) return true;
+        }
+        return false;
+    }
+
+    private static void register(@NotNull Plugin plugin) {
+        if (registrations++ > 0) return;
+
+        // Async on the netty threads, which keeps the order of all packets, unlike the asynchronous manager
+        packetListener = new PacketAdapter(PacketAdapter.params(plugin, PacketType.Play.Server.ENTITY_METADATA,
+                PacketType.Play.Server.NAMED_ENTITY_SPAWN).optionAsync()) {
+            @Override
+            public void onPacketSending(PacketEvent event) {
+                PacketContainer packet = event.getPacket();
+                int entityId = packet.getIntegers().read(0);
+                if (!isOutlined(event.getPlayer(), entityId)) return;
+
+                // The same packet can be sent to several players, so the outline is added to a copy
+                PacketType packetType = event.getPacketType();
+                if (packetType.equals(PacketType.Play.Server.ENTITY_METADATA)) {
+                    List<WrappedWatchableObject> watchableObjects = new ArrayList<>(packet.getWatchableCollectionModifier().read(0));
+                    for (int i = 0; i < watchableObjects.size(); i++) {
+                        WrappedWatchableObject watchableObject = watchableObjects.get(i);
+                        if (watchableObject.getIndex() != FLAGS_INDEX) continue;
+                        byte b = (byte) watchableObject.getValue();
+                        b |= GLOWING_FLAG;
+                        watchableObjects.set(i, new WrappedWatchableObject(watchableObject.getWatcherObject(), b));
+                    }
+
+                    packet = packet.shallowClone();
+                    packet.getWatchableCollectionModifier().write(0, watchableObjects);
+                    event.setPacket(packet);
+                } else if (packetType.equals(PacketType.Play.Server.NAMED_ENTITY_SPAWN)) {
+                    packet = packet.deepClone();
+                    WrappedDataWatcher dataWatcher = packet.getDataWatcherModifier().read(0);
+                    if (dataWatcher.hasIndex(FLAGS_INDEX)) {
+                        byte b = dataWatcher.getByte(FLAGS_INDEX);
+                        b |= GLOWING_FLAG;
+                        dataWatcher.setObject(FLAGS_INDEX, b);
+                        packet.getDataWatcherModifier().write(0, dataWatcher);
+                    }
+                    event.setPacket(packet);
+                }
+            }
+        };
+        protocolManager.addPacketListener(packetListener);
+    }
+
+    private static void unregister() {
+        if (--registrations > 0) return;
+
+        if (packetListener != null) protocolManager.removePacketListener(packetListener);
+        packetListener = null;
+    }
+
+
+    /**
+     * A set of entity ids that counts how many times each entity id has been added, kept in an open addressing hash
+     * table of primitive ints.
+     */
+    private static class EntityIdCounts {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY]; // Times the entity id in the slot was added, or 0 if free
+        private int size;
+
+        private boolean contains(int entityId) {
+            return counts[findSlot(entityId)] > 0;
+        }
+
+        private void add(int entityId) {
+            // Keep the hash table at most half full
+            if ((size + 1) * 2 > counts.length) grow();
+
+            int slot = findSlot(entityId);
+            if (counts[slot]++ == 0) {
+                keys[slot] = entityId;
+                size++;
+            }
+        }
+
+        /**
+         * @return if the entity id was in the set
+         */
+        private boolean remove(int entityId) {
+            int slot = findSlot(entityId);
+            if (counts[slot] == 0) return false;
+            if (--counts[slot] > 0) return true;
+            size--;
+
+            // Shift the following entries of the same probe sequence back into the freed slot
+            int mask = counts.length - 1;
+            int free = slot;
+            for (int i = (slot + 1) & mask; counts[i] > 0; i = (i + 1) & mask) {
+                int home = hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - free) & mask)) {
+                    keys[free] = keys[i];
+                    counts[free] = counts[i];
+                    counts[i] = 0;
+                    free = i;
+                }
+            }
+            return true;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return a copy of this set, to be published as a snapshot that is never modified
+         */
+        @NotNull
+        private EntityIdCounts copy() {
+            EntityIdCounts copy = new EntityIdCounts();
+            copy.keys = keys.clone();
+            copy.counts = counts.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        private int findSlot(int entityId) {
+            int mask = counts.length - 1;
+            int slot = hash(entityId) & mask;
+            while (counts[slot] > 0 && keys[slot] != entityId) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] == 0) continue;
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        private static int hash(int entityId) {
+            int h = entityId * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
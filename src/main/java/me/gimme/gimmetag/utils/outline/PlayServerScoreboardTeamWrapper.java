@@ -16,7 +16,8 @@ import java.util.List;
  * Used to send scoreboard team color packets.
  * <p>
  * To set the team color of entities, a {@link Mode#TEAM_CREATED} packet including the color needs to be sent followed
- * by a {@link Mode#ENTRIES_ADDED} packet including the entities.
+ * by a {@link Mode#ENTRIES_ADDED} packet including the entities. Entities are taken out of a team again with a
+ * {@link Mode#ENTRIES_REMOVED} packet.
  * <p>
  * If a team already exists with the name that was given, the team creation packet gets ignored and can safely be resent
  * any number of times.
@@ -42,10 +43,6 @@ class PlayServerScoreboardTeamWrapper {
         }
     }
 
-    void broadcast() {
-        ProtocolLibrary.getProtocolManager().broadcastServerPacket(handle);
-    }
-
     void setColor(ChatColor color) {
         handle.getEnumModifier(ChatColor.class, MinecraftReflection.getMinecraftClass("EnumChatFormat")).write(0, color);
     }
@@ -64,7 +61,8 @@ class PlayServerScoreboardTeamWrapper {
 
     enum Mode {
         TEAM_CREATED(0),
-        ENTRIES_ADDED(3);
+        ENTRIES_ADDED(3),
+        ENTRIES_REMOVED(4);
 
         private final int value;
 